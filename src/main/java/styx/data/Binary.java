@@ -1,5 +1,8 @@
 package styx.data;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * An immutable sequence of bytes.
  */
@@ -27,4 +30,28 @@ public interface Binary extends Value {
      * @return a newly allocated byte array that contains the same bytes, never null.
      */
     public byte[] toByteArray();
+
+    /**
+     * Returns a part of this value.
+     *
+     * @param fromIndex the index of the first byte, must be in the range 0 .. byteCount().
+     * @param toIndex the index after the last byte, must be in the range fromIndex .. byteCount().
+     * @return a value that contains the given range of bytes, never null.
+     * @throws IndexOutOfBoundsException if the given indexes are invalid.
+     */
+    public default Binary slice(int fromIndex, int toIndex) {
+        if(fromIndex < 0 || fromIndex > toIndex || toIndex > byteCount()) {
+            throw new IndexOutOfBoundsException();
+        }
+        return Values.binary(Arrays.copyOfRange(toByteArray(), fromIndex, toIndex));
+    }
+
+    /**
+     * Returns a read-only view of the bytes of this value.
+     *
+     * @return a newly allocated, read-only buffer whose remaining bytes are the bytes of this value, never null.
+     */
+    public default ByteBuffer asReadOnlyBuffer() {
+        return ByteBuffer.wrap(toByteArray()).asReadOnlyBuffer();
+    }
 }
@@ -0,0 +1,33 @@
+package styx.data;
+
+import java.util.Optional;
+
+/**
+ * An immutable change between two versions of a complex value.
+ * <p>
+ * A change is either the addition, the removal or the modification of an entry. Changes of nested complex
+ * values are reported for the entries of the nested value, not for the nested value as a whole.
+ */
+public interface Change {
+
+    /**
+     * Returns the path of the changed entry, relative to the compared values.
+     *
+     * @return the reference with the keys leading to the entry, never null or empty.
+     */
+    public Reference path();
+
+    /**
+     * Returns the value before the change.
+     *
+     * @return the old value, or empty if the entry has been added.
+     */
+    public Optional<Value> oldValue();
+
+    /**
+     * Returns the value after the change.
+     *
+     * @return the new value, or empty if the entry has been removed.
+     */
+    public Optional<Value> newValue();
+}
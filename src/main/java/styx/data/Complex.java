@@ -2,13 +2,21 @@ package styx.data;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BinaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import styx.data.impl.value.ComplexDiff;
+
 /**
  * An immutable, ordered map of key/value-pairs.
  */
@@ -38,6 +46,160 @@ public interface Complex extends Value, Iterable<Pair> {
         return values().collect(Collectors.toList());
     }
 
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of key/value-pairs.
+     */
+    public default int size() {
+        return (int) entries().count();
+    }
+
+    /**
+     * Returns the entry at the given position in key order.
+     *
+     * @param index the zero-based position of the entry.
+     * @return the key/value-pair, never null.
+     * @throws IndexOutOfBoundsException if the index is negative or not less than size().
+     */
+    public default Pair entryAt(int index) {
+        if(index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return entries().skip(index).findFirst().orElseThrow(() -> new IndexOutOfBoundsException("Index: " + index));
+    }
+
+    /**
+     * Returns the rank of the given key, which is the number of keys that are less than the given one.
+     * <p>
+     * If the key exists, this is its position in key order (i.e. entryAt(rankOf(key)) returns its entry),
+     * otherwise it is the position at which it would be inserted.
+     *
+     * @param key the key, must not be null.
+     * @return the rank, between 0 and size().
+     */
+    public default int rankOf(Value key) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        return (int) keys().filter(k -> k.compareTo(key) < 0).count();
+    }
+
+    /**
+     * Returns the first entry.
+     *
+     * @return the entry with the least key, or empty if this value is empty.
+     */
+    public default Optional<Pair> first() {
+        return size() == 0 ? Optional.empty() : Optional.of(entryAt(0));
+    }
+
+    /**
+     * Returns the last entry.
+     *
+     * @return the entry with the greatest key, or empty if this value is empty.
+     */
+    public default Optional<Pair> last() {
+        return size() == 0 ? Optional.empty() : Optional.of(entryAt(size() - 1));
+    }
+
+    /**
+     * Returns the entry with the greatest key less than or equal to the given one.
+     *
+     * @param key the key, must not be null.
+     * @return the entry, or empty if there is no such key.
+     */
+    public default Optional<Pair> floor(Value key) {
+        int rank = rankOf(key);
+        if(rank < size()) {
+            Pair pair = entryAt(rank);
+            if(pair.key().equals(key)) {
+                return Optional.of(pair);
+            }
+        }
+        return rank == 0 ? Optional.empty() : Optional.of(entryAt(rank - 1));
+    }
+
+    /**
+     * Returns the entry with the least key greater than or equal to the given one.
+     *
+     * @param key the key, must not be null.
+     * @return the entry, or empty if there is no such key.
+     */
+    public default Optional<Pair> ceiling(Value key) {
+        int rank = rankOf(key);
+        return rank == size() ? Optional.empty() : Optional.of(entryAt(rank));
+    }
+
+    /**
+     * Returns the entries with keys less than the given one.
+     *
+     * @param toKey the upper bound (exclusive), must not be null.
+     * @return the entries, never null.
+     */
+    public default Complex headMap(Value toKey) {
+        return split(toKey)[0];
+    }
+
+    /**
+     * Returns the entries with keys greater than or equal to the given one.
+     *
+     * @param fromKey the lower bound (inclusive), must not be null.
+     * @return the entries, never null.
+     */
+    public default Complex tailMap(Value fromKey) {
+        return split(fromKey)[1];
+    }
+
+    /**
+     * Returns the entries with keys in the given range.
+     *
+     * @param fromKey the lower bound (inclusive), null for no lower bound.
+     * @param toKey the upper bound (exclusive), null for no upper bound.
+     * @return the entries, never null.
+     * @throws IllegalArgumentException if fromKey is greater than toKey.
+     */
+    public default Complex subMap(Value fromKey, Value toKey) {
+        if(fromKey != null && toKey != null && fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("The lower bound must not be greater than the upper bound.");
+        }
+        Complex result = fromKey == null ? this : tailMap(fromKey);
+        return toKey == null ? result : result.headMap(toKey);
+    }
+
+    /**
+     * Returns an iterator over the entries in descending order of their keys.
+     *
+     * @return the iterator, never null.
+     */
+    public default Iterator<Pair> descendingIterator() {
+        return new Iterator<Pair>() {
+            private int index = size();
+
+            @Override
+            public boolean hasNext() {
+                return index > 0;
+            }
+
+            @Override
+            public Pair next() {
+                if(index == 0) {
+                    throw new NoSuchElementException();
+                }
+                return entryAt(--index);
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential stream over the entries in descending order of their keys.
+     *
+     * @return the stream, never null.
+     */
+    public default Stream<Pair> descendingEntries() {
+        return StreamSupport.stream(Spliterators.spliterator(descendingIterator(), size(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     public Optional<Value> get(Value key);
 
     public Complex put(Value key, Value value);
@@ -66,9 +228,9 @@ public interface Complex extends Value, Iterable<Pair> {
         return current;
     }
 
-//    public default Complex add(Value value) {
-//        return put(Values.number(nextIndex()), value);
-//    }
+    public default Complex add(Value value) {
+        return put(Values.number(nextIndex()), value);
+    }
 
     public default Complex addAll(Value... values) {
         return addAll(values == null ? null : Arrays.asList(values));
@@ -85,5 +247,93 @@ public interface Complex extends Value, Iterable<Pair> {
         return current;
     }
 
+    /**
+     * Returns the union of this value and the given one.
+     *
+     * @param other the other value, must not be null.
+     * @param conflict the function that is called for keys that exist in both values, with the value of this
+     *        and the value of the other as arguments, and which returns the resulting value or null to remove the key.
+     * @return the union, never null.
+     */
+    public default Complex merge(Complex other, BinaryOperator<Value> conflict) {
+        Objects.requireNonNull(conflict);
+        Complex current = this;
+        for(Pair pair : other) {
+            Optional<Value> existing = get(pair.key());
+            current = current.put(pair.key(), existing.isPresent() ? conflict.apply(existing.get(), pair.value()) : pair.value());
+        }
+        return current;
+    }
+
+    /**
+     * Returns the entries of this value whose keys exist in the given one.
+     *
+     * @param other the other value, must not be null.
+     * @return the intersection, with the values of this value, never null.
+     */
+    public default Complex intersect(Complex other) {
+        Objects.requireNonNull(other);
+        return Values.complex(entries().filter(pair -> other.get(pair.key()).isPresent()).collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns the entries of this value whose keys do not exist in the given one.
+     *
+     * @param other the other value, must not be null.
+     * @return the difference, never null.
+     */
+    public default Complex difference(Complex other) {
+        Complex current = this;
+        for(Pair pair : other) {
+            current = current.put(pair.key(), null);
+        }
+        return current;
+    }
+
+    /**
+     * Splits this value at the given key.
+     *
+     * @param key the key, must not be null.
+     * @return an array of two values: the entries with keys less than the given one, and the entries with
+     *         keys greater than or equal to the given one.
+     */
+    public default Complex[] split(Value key) {
+        int rank = rankOf(key);
+        List<Pair> entries = allEntries();
+        return new Complex[] { Values.complex(entries.subList(0, rank)), Values.complex(entries.subList(rank, entries.size())) };
+    }
+
+    /**
+     * Concatenates this value and the given one, all keys of which must be greater than the keys of this value.
+     *
+     * @param other the other value, must not be null.
+     * @return the concatenation, never null.
+     * @throws IllegalArgumentException if the ranges of the keys overlap.
+     */
+    public default Complex concat(Complex other) {
+        if(size() > 0 && other.size() > 0 && entryAt(size() - 1).key().compareTo(other.entryAt(0).key()) >= 0) {
+            throw new IllegalArgumentException("The keys of the values overlap.");
+        }
+        return putAll(other.allEntries());
+    }
+
+    /**
+     * Returns the changes that turn this value into the given one, recursing into nested complex values.
+     * <p>
+     * Values and subtrees which are shared between both values are skipped, so that the cost is proportional
+     * to the number of changes if one value has been derived from the other.
+     *
+     * @param other the other value, must not be null.
+     * @return the changes, in the order of their paths, empty if both values are equal.
+     */
+    public default List<Change> diff(Complex other) {
+        return ComplexDiff.diff(this, Objects.requireNonNull(other));
+    }
+
+    /**
+     * Returns the key to be used by add() and addAll().
+     *
+     * @return the integral part of the greatest numeric key plus one, or one if there is no positive numeric key.
+     */
     public long nextIndex();
 }
@@ -0,0 +1,64 @@
+package styx.data;
+
+/**
+ * A cursor over the events of a parsed input, for pull parsing (see Values.cursor()).
+ * <p>
+ * Unlike Values.parse(), the cursor never holds more than the current line of the input, so inputs that are
+ * larger than the heap can be processed, and processing can be stopped at any point. The entries of the input
+ * are reported in order:
+ * <ul>
+ * <li>OPEN: a complex value starts, key() is its key.</li>
+ * <li>VALUE: a non-complex entry, key() and value() are its key and value.</li>
+ * <li>CLOSE: the complex value with the given key() ends.</li>
+ * </ul>
+ * The top level lines of the input are reported as entries with the keys 1, 2, ... (at depth 0), where the
+ * value of the first one is the value returned by Values.parse(). For example, <code>tag { a, b }</code> is
+ * reported as OPEN 1, OPEN tag, VALUE 1 a, VALUE 2 b, CLOSE tag, CLOSE 1.
+ */
+public interface Cursor extends AutoCloseable {
+
+    public enum Event {
+        OPEN, VALUE, CLOSE
+    }
+
+    /**
+     * Moves to the next event.
+     *
+     * @return true if there is a next event, false at the end of the input.
+     * @throws ParserException if the input is invalid.
+     */
+    public boolean next();
+
+    /**
+     * @return the current event, null if next() has not been called yet or has returned false.
+     */
+    public Event event();
+
+    /**
+     * @return the key of the current entry, never null.
+     * @throws InvalidAccessException if there is no current event.
+     */
+    public Value key();
+
+    /**
+     * @return the value of the current entry, never null.
+     * @throws InvalidAccessException if the current event is not VALUE.
+     */
+    public Value value();
+
+    /**
+     * @return the number of complex values that enclose the current entry, 0 for the top level.
+     */
+    public int depth();
+
+    /**
+     * Skips the entries of the complex value that has just been opened, the matching CLOSE becomes the current event.
+     *
+     * @throws InvalidAccessException if the current event is not OPEN.
+     * @throws ParserException if the input is invalid.
+     */
+    public void skipChildren();
+
+    @Override
+    public void close();
+}
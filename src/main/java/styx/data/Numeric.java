@@ -1,5 +1,7 @@
 package styx.data;
 
+import java.math.BigDecimal;
+
 /**
  * An immutable, arbitrary-precision signed decimal number.
  */
@@ -36,6 +38,14 @@ public interface Numeric extends Value {
      */
     public double toDouble();
 
+    /**
+     * Converts the number to an arbitrary-precision decimal value.
+     *
+     * @return a BigDecimal that is equal to the number.
+     * @throws ArithmeticException if the number is not finite.
+     */
+    public BigDecimal toBigDecimal();
+
     /**
      * Converts the number to a decimal string representation.
      *
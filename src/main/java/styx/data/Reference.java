@@ -53,4 +53,61 @@ public interface Reference extends Value {
         }
         return current;
     }
+
+    /**
+     * Checks whether this reference is a (proper) ancestor of the given reference.
+     *
+     * @param other the other reference, must not be null.
+     * @return true if the parts of this reference are a proper prefix of the parts of the other reference.
+     */
+    public default boolean isAncestorOf(Reference other) {
+        int partCount = partCount();
+        if(other.partCount() <= partCount) {
+            return false;
+        }
+        for(int index = partCount - 1; index >= 0; index--) {
+            if(!partAt(index).equals(other.partAt(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the longest common prefix of this reference and the given reference.
+     *
+     * @param other the other reference, must not be null.
+     * @return the ancestor (or this reference itself) whose parts are the longest common prefix, never null.
+     */
+    public default Reference commonPrefix(Reference other) {
+        int commonCount = Math.min(partCount(), other.partCount());
+        int index = 0;
+        while(index < commonCount && partAt(index).equals(other.partAt(index))) {
+            index++;
+        }
+        Reference current = this;
+        for(int count = partCount(); count > index; count--) {
+            current = current.parent().get();
+        }
+        return current;
+    }
+
+    /**
+     * Returns the given reference relative to this reference.
+     *
+     * @param other the other reference, must be a descendant of this reference or equal to it.
+     * @return a reference (starting at the root) that consists of the parts of the other reference which follow
+     *         the parts of this reference, never null.
+     * @throws IllegalArgumentException if the other reference is not a descendant of this reference or equal to it.
+     */
+    public default Reference relativize(Reference other) {
+        if(!other.equals(this) && !isAncestorOf(other)) {
+            throw new IllegalArgumentException("The reference is not a descendant.");
+        }
+        Reference current = Values.root();
+        for(int index = partCount(); index < other.partCount(); index++) {
+            current = current.child(other.partAt(index));
+        }
+        return current;
+    }
 }
@@ -21,7 +21,40 @@ public interface Store extends AutoCloseable {
 
     public Stream<Pair> browse(Reference ref);
 
+    /**
+     * Returns the children of a complex value whose keys are in the given range, in ascending order.
+     * <p>
+     * Like for Complex.subMap(), an inverted range is an error rather than an empty range.
+     *
+     * @param ref the reference of the complex value, must not be null.
+     * @param fromKey the lower bound (inclusive), null for no lower bound.
+     * @param toKey the upper bound (exclusive), null for no upper bound.
+     * @return the children, where complex values are represented by empty values.
+     * @throws IllegalArgumentException if both bounds are given and fromKey is greater than toKey.
+     */
+    public default Stream<Pair> browse(Reference ref, Value fromKey, Value toKey) {
+        if(fromKey != null && toKey != null && fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("The lower bound must not be greater than the upper bound.");
+        }
+        return browse(ref).filter(pair ->
+                (fromKey == null || pair.key().compareTo(fromKey) >= 0) &&
+                (toKey == null || pair.key().compareTo(toKey) < 0));
+    }
+
     public Optional<Value> read(Reference ref);
 
     public void write(Reference ref, Value value);
+
+    /**
+     * Estimates the heap memory that the value at the given reference retains when read, in bytes.
+     * <p>
+     * By default, this reads the value and estimates it with Values.estimateSize(), which only visits the parts
+     * of the value that have not been estimated before.
+     *
+     * @param ref the reference of the value, must not be null, use the root reference for the whole store.
+     * @return the estimate (see Values.estimateSize()), zero if the value does not exist.
+     */
+    public default long estimateSize(Reference ref) {
+        return read(ref).map(Values::estimateSize).orElse(0L);
+    }
 }
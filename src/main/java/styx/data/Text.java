@@ -25,6 +25,19 @@ public interface Text extends Value {
         return toCharString().charAt(index);
     }
 
+    /**
+     * Copies characters of this value into the given array.
+     *
+     * @param srcBegin the index of the first character to copy.
+     * @param srcEnd the index after the last character to copy.
+     * @param dst the destination array, must not be null.
+     * @param dstBegin the start offset in the destination array.
+     * @throws IndexOutOfBoundsException if the given indexes are invalid.
+     */
+    public default void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        toCharString().getChars(srcBegin, srcEnd, dst, dstBegin);
+    }
+
     /**
      * Converts the value to a string.
      *
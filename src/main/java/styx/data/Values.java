@@ -2,42 +2,67 @@ package styx.data;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.Map;
 
+import styx.data.impl.BinaryGenerator;
+import styx.data.impl.BinaryParser;
 import styx.data.impl.Generator;
 import styx.data.impl.Parser;
+import styx.data.impl.ParserCursor;
+import styx.data.impl.SortableGenerator;
+import styx.data.impl.SortableParser;
 import styx.data.impl.value.AbstractNumeric;
+import styx.data.impl.value.ArrayReference;
 import styx.data.impl.value.BinaryTreeComplex;
 import styx.data.impl.value.ByteArrayBinary;
+import styx.data.impl.value.ByteBufferBinary;
 import styx.data.impl.value.DefaultPair;
-import styx.data.impl.value.LinkedListReference;
 import styx.data.impl.value.StringText;
+import styx.data.impl.value.Utf8Text;
+import styx.data.impl.value.ValueFootprint;
+import styx.data.impl.value.ValueInterner;
 
 public class Values {
 
     private static final Charset CHARSET = StandardCharsets.UTF_8;
 
+    /**
+     * Enables interning of the values returned by the factory methods (and therefore also by the parser).
+     * <p>
+     * Set the system property <code>styx.data.intern</code> to <code>true</code> to enable.
+     */
+    private static final boolean INTERN = Boolean.getBoolean("styx.data.intern");
+
     public static Numeric number(long value) {
-        return AbstractNumeric.valueOf(value);
+        return canonical(AbstractNumeric.valueOf(value)).asNumeric();
     }
 
     public static Numeric number(double value) {
-        return AbstractNumeric.valueOf(value);
+        return canonical(AbstractNumeric.valueOf(value)).asNumeric();
+    }
+
+    public static Numeric number(BigDecimal value) {
+        return canonical(AbstractNumeric.valueOf(value)).asNumeric();
     }
 
     public static Text text() {
@@ -45,7 +70,16 @@ public class Values {
     }
 
     public static Text text(String value) {
-        return StringText.valueOf(value);
+        return canonical(StringText.valueOf(value)).asText();
+    }
+
+    /**
+     * Constructs a textual value from a copy of the given UTF-8 encoded bytes.
+     *
+     * @throws IllegalArgumentException if the bytes are not valid UTF-8.
+     */
+    public static Text text(byte[] value, int offset, int length) {
+        return canonical(Utf8Text.valueOf(value, offset, length)).asText();
     }
 
     public static Binary binary() {
@@ -53,11 +87,28 @@ public class Values {
     }
 
     public static Binary binary(byte[] value) {
-        return ByteArrayBinary.valueOf(value);
+        return canonical(ByteArrayBinary.valueOf(value)).asBinary();
+    }
+
+    public static Binary binary(byte[] value, int offset, int length) {
+        return canonical(ByteArrayBinary.valueOf(value, offset, length)).asBinary();
+    }
+
+    /**
+     * Constructs a binary value that shares the remaining bytes of the given buffer (zero-copy).
+     * <p>
+     * The buffer can be a heap, direct or memory-mapped buffer. The caller must guarantee that the content of
+     * the buffer is never modified afterwards.
+     *
+     * @param value the buffer, can be null.
+     * @return a binary value, never null.
+     */
+    public static Binary binaryView(ByteBuffer value) {
+        return canonical(ByteBufferBinary.wrap(value)).asBinary();
     }
 
     public static Reference root() {
-        return LinkedListReference.ROOT;
+        return ArrayReference.ROOT;
     }
 
     public static Reference reference(Value... parts) {
@@ -73,42 +124,88 @@ public class Values {
     }
 
     public static Complex complex(Value key, Value value) {
-        return empty().put(key, value);
+        return canonical(empty().put(key, value)).asComplex();
     }
 
     public static Complex complex(Pair... pairs) {
-        return empty().putAll(pairs);
+        return canonical(empty().putAll(pairs)).asComplex();
     }
 
     public static Complex complex(Collection<Pair> pairs) {
-        return empty().putAll(pairs);
+        return canonical(empty().putAll(pairs)).asComplex();
     }
 
     public static Complex complex(Map<? extends Value, ? extends Value> values) {
-        return empty().putAll(values);
+        return canonical(empty().putAll(values)).asComplex();
     }
 
     public static Complex list(Value... values) {
-        return empty().addAll(values);
+        return canonical(empty().addAll(values)).asComplex();
     }
 
     public static Complex list(Collection<? extends Value> values) {
-        return empty().addAll(values);
+        return canonical(empty().addAll(values)).asComplex();
     }
 
     public static Pair pair(Value key, Value value) {
         return new DefaultPair(key, value);
     }
 
+    /**
+     * Returns the canonical instance of the given value, so that equal values can share a single instance.
+     * <p>
+     * The value is interned deeply, i.e. including the parts of references and the keys and values of complex values.
+     * Canonical instances are held weakly and are discarded when no longer in use.
+     *
+     * @param value the value, must not be null.
+     * @return a value that is equal to the given value, never null.
+     */
+    public static Value intern(Value value) {
+        return ValueInterner.internDeep(value);
+    }
+
+    private static Value canonical(Value value) {
+        return INTERN ? ValueInterner.intern(value) : value;
+    }
+
+    /**
+     * Estimates the heap memory retained by the given value, in bytes.
+     * <p>
+     * The estimate is memoized in the nodes of complex values, so that estimating a value again takes constant
+     * time, and estimating a version derived from an estimated value only visits the nodes that have been copied.
+     * In turn, parts which occur several times within the value are counted every time (see
+     * ValueFootprint.retainedSize()). Use an instance of ValueFootprint to count shared parts only once, to
+     * estimate several values together or to get a breakdown by kind, which walks the whole value, though.
+     */
+    public static long estimateSize(Value value) {
+        return ValueFootprint.retainedSize(value);
+    }
+
     public static Value parse(String input) {
-        return parse(new StringReader(input));
+        try {
+            return new Parser(input, false).parse();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public static Value parse(Path path) {
         return parse(path, CHARSET);
     }
 
+    /**
+     * Parses the given file.
+     * <p>
+     * UTF-8 encoded files are memory mapped and parsed on the byte level, other charsets are decoded.
+     */
     public static Value parse(Path path, Charset charset) {
+        if(charset.equals(StandardCharsets.UTF_8)) {
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return new Parser(channel).parse();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         try {
             return parse(Files.newBufferedReader(path, charset));
         } catch (IOException e) {
@@ -121,9 +218,39 @@ public class Values {
     }
 
     public static Value parse(InputStream stream, Charset charset) {
+        if(charset.equals(StandardCharsets.UTF_8)) {
+            try {
+                return new Parser(stream).parse();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         return parse(new BufferedReader(new InputStreamReader(stream, charset)));
     }
 
+    /**
+     * Parses the given UTF-8 encoded bytes.
+     */
+    public static Value parse(byte[] input) {
+        try {
+            return new Parser(input, 0, input.length).parse();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses the remaining UTF-8 encoded bytes of the given buffer, which may be direct or memory mapped.
+     * The position of the buffer is not changed.
+     */
+    public static Value parse(ByteBuffer input) {
+        try {
+            return new Parser(input).parse();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public static Value parse(Reader reader) {
         try {
             return new Parser(reader).parse();
@@ -132,6 +259,133 @@ public class Values {
         }
     }
 
+    /**
+     * Returns a cursor over the events of the given text, for pull parsing (see Cursor).
+     */
+    public static Cursor cursor(String input) {
+        return new ParserCursor(new Parser(input, false), null);
+    }
+
+    /**
+     * Returns a cursor over the events of the given UTF-8 encoded file, which is closed with the cursor.
+     */
+    public static Cursor cursor(Path path) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            return new ParserCursor(new Parser(channel), channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns a cursor over the events of the given UTF-8 encoded stream, which is not closed with the cursor.
+     */
+    public static Cursor cursor(InputStream stream) {
+        return new ParserCursor(new Parser(stream), null);
+    }
+
+    /**
+     * Returns a cursor over the events of the given reader, which is not closed with the cursor.
+     */
+    public static Cursor cursor(Reader reader) {
+        return new ParserCursor(new Parser(reader), null);
+    }
+
+    /**
+     * Parses the given text lazily: nested blocks are only parsed when they are accessed for the first time.
+     * <p>
+     * The result is equal to the one of parse(), but syntax errors within nested blocks are only detected
+     * (and thrown as ParserException) when the block is accessed.
+     */
+    public static Value parseLazy(String input) {
+        try {
+            return new Parser(input, true).parse();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Value parseLazy(Path path) {
+        return parseLazy(path, CHARSET);
+    }
+
+    /**
+     * Parses the given file lazily (see parseLazy(String)).
+     * <p>
+     * UTF-8 encoded files of up to 2 GB are memory mapped, and nested blocks are parsed from the mapping on the
+     * byte level when they are accessed, so the file must not be modified while the result is in use. Larger
+     * files are parsed eagerly like by parse(). Files in other charsets are read and decoded into a string
+     * completely, which takes memory for all chars of the file, before they are parsed lazily.
+     */
+    public static Value parseLazy(Path path, Charset charset) {
+        if(charset.equals(StandardCharsets.UTF_8)) {
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if(channel.size() > Integer.MAX_VALUE) {
+                    return new Parser(channel).parse();
+                }
+                return new Parser(channel.map(MapMode.READ_ONLY, 0, channel.size()), true).parse();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        try {
+            return parseLazy(new String(Files.readAllBytes(path), charset));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses a value in the compact binary format (see BinaryParser).
+     *
+     * @param input the bytes, which must contain exactly one value.
+     * @return the value, never null.
+     * @throws ParserException if the input is not valid.
+     */
+    public static Value parseBinary(byte[] input) {
+        try {
+            return parseBinary(new BinaryParser(input, 0, input.length));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Value parseBinary(Path path) {
+        try(InputStream stream = Files.newInputStream(path)) {
+            return parseBinary(stream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Value parseBinary(InputStream stream) {
+        try {
+            return parseBinary(new BinaryParser(stream));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Value parseBinary(BinaryParser parser) throws IOException {
+        Value value = parser.parse();
+        if(!parser.eof()) {
+            throw new ParserException("Invalid binary format: unexpected data after the value.");
+        }
+        return value;
+    }
+
+    /**
+     * Parses a value in the sortable binary format (see SortableParser).
+     *
+     * @param input the bytes, which must contain exactly one value.
+     * @return the value, never null.
+     * @throws ParserException if the input is not valid.
+     */
+    public static Value parseSortable(byte[] input) {
+        return new SortableParser(input, 0, input.length).parse();
+    }
+
     public static String generate(Value value, GeneratorOption... options) {
         StringWriter writer = new StringWriter();
         generate(value, writer, options);
@@ -166,4 +420,40 @@ public class Values {
             throw new UncheckedIOException(e);
         }
     }
+
+    /**
+     * Generates the compact binary format (see BinaryParser) of the given value.
+     */
+    public static byte[] generateBinary(Value value) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        generateBinary(value, stream);
+        return stream.toByteArray();
+    }
+
+    public static void generateBinary(Value value, Path path) {
+        try(OutputStream stream = Files.newOutputStream(path)) {
+            generateBinary(value, stream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void generateBinary(Value value, OutputStream stream) {
+        try {
+            BinaryGenerator generator = new BinaryGenerator(stream);
+            generator.generate(value);
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generates the sortable binary format (see SortableParser) of the given value.
+     * <p>
+     * The unsigned, lexicographic order of the generated bytes equals the order of the values.
+     */
+    public static byte[] generateSortable(Value value) {
+        return new SortableGenerator().generate(value);
+    }
 }
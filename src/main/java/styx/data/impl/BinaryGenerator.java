@@ -0,0 +1,235 @@
+package styx.data.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import styx.data.Binary;
+import styx.data.Complex;
+import styx.data.Numeric;
+import styx.data.Pair;
+import styx.data.Reference;
+import styx.data.Text;
+import styx.data.Value;
+import styx.data.impl.value.AbstractNumeric;
+import styx.data.impl.value.Utf8Text;
+
+/**
+ * A generator for the compact binary format, see BinaryParser.
+ * <p>
+ * The output is buffered internally, flush() must be called after the last value.
+ */
+public class BinaryGenerator {
+
+    static final int TAG_INTEGER = 1;
+    static final int TAG_DOUBLE = 2;
+    static final int TAG_DECIMAL = 3;
+    static final int TAG_TEXT = 4;
+    static final int TAG_BINARY = 5;
+    static final int TAG_REFERENCE = 6;
+    static final int TAG_COMPLEX = 7;
+
+    private final OutputStream stream;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private char[] chars = new char[64];
+
+    /** a view of the buffer as a stream, for values that write their bytes themselves */
+    private final OutputStream bufferStream = new OutputStream() {
+        @Override
+        public void write(int value) throws IOException {
+            writeByte(value);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            writeBytes(bytes, offset, length);
+        }
+    };
+
+    public BinaryGenerator(OutputStream stream) {
+        this.stream = stream;
+    }
+
+    public void generate(Value value) throws IOException {
+        write(value);
+    }
+
+    public void flush() throws IOException {
+        stream.write(buffer, 0, position);
+        position = 0;
+        stream.flush();
+    }
+
+    private void write(Value value) throws IOException {
+        switch(value.kind()) {
+            case NUMBER:
+                write(value.asNumeric()); break;
+            case TEXT:
+                write(value.asText()); break;
+            case BINARY:
+                write(value.asBinary()); break;
+            case REFERENCE:
+                write(value.asReference()); break;
+            case COMPLEX:
+                write(value.asComplex()); break;
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    private void write(Numeric value) throws IOException {
+        if(AbstractNumeric.isLong(value)) {
+            long number = value.toLong();
+            writeByte(TAG_INTEGER);
+            writeVarint((number << 1) ^ (number >> 63)); // zigzag, so that small negative numbers are short
+        } else if(AbstractNumeric.isDouble(value)) {
+            long bits = Double.doubleToRawLongBits(value.toDouble());
+            writeByte(TAG_DOUBLE);
+            reserve(8);
+            for(int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (bits >>> shift);
+            }
+        } else {
+            BigDecimal decimal = value.toBigDecimal();
+            byte[] unscaled = decimal.unscaledValue().toByteArray();
+            writeByte(TAG_DECIMAL);
+            writeVarint((decimal.scale() << 1) ^ (decimal.scale() >> 31));
+            writeVarint(unscaled.length);
+            writeBytes(ByteBuffer.wrap(unscaled));
+        }
+    }
+
+    private void write(Text value) throws IOException {
+        if(value instanceof Utf8Text) {
+            Utf8Text utf8 = (Utf8Text) value; // already encoded, e.g. if parsed from UTF-8
+            writeByte(TAG_TEXT);
+            writeVarint(utf8.byteCount());
+            utf8.writeTo(bufferStream);
+            return;
+        }
+        int charCount = value.charCount();
+        char[] chars = reserveChars(charCount);
+        value.getChars(0, charCount, chars, 0);
+        int byteCount = 0;
+        for(int index = 0; index < charCount; index++) {
+            char character = chars[index];
+            if(character < 0x80) {
+                byteCount += 1;
+            } else if(character < 0x800) {
+                byteCount += 2;
+            } else if(isSurrogatePair(chars, index, charCount)) {
+                byteCount += 4;
+                index++;
+            } else {
+                byteCount += Character.isSurrogate(character) ? 1 : 3;
+            }
+        }
+        writeByte(TAG_TEXT);
+        writeVarint(byteCount);
+        for(int index = 0; index < charCount; index++) {
+            char character = chars[index];
+            reserve(4);
+            if(character < 0x80) {
+                buffer[position++] = (byte) character;
+            } else if(character < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (character >> 6));
+                buffer[position++] = (byte) (0x80 | (character & 0x3F));
+            } else if(isSurrogatePair(chars, index, charCount)) {
+                int codePoint = Character.toCodePoint(character, chars[++index]);
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if(Character.isSurrogate(character)) {
+                buffer[position++] = '?'; // an unpaired surrogate, same as String.getBytes()
+            } else {
+                buffer[position++] = (byte) (0xE0 | (character >> 12));
+                buffer[position++] = (byte) (0x80 | ((character >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (character & 0x3F));
+            }
+        }
+    }
+
+    private void write(Binary value) throws IOException {
+        writeByte(TAG_BINARY);
+        writeVarint(value.byteCount());
+        writeBytes(value.asReadOnlyBuffer());
+    }
+
+    private void write(Reference value) throws IOException {
+        writeByte(TAG_REFERENCE);
+        writeVarint(value.partCount());
+        for(int index = 0; index < value.partCount(); index++) {
+            write(value.partAt(index));
+        }
+    }
+
+    private void write(Complex value) throws IOException {
+        writeByte(TAG_COMPLEX);
+        writeVarint(value.size());
+        for(Pair pair : value) {
+            write(pair.key());
+            write(pair.value());
+        }
+    }
+
+    private void writeByte(int value) throws IOException {
+        reserve(1);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeVarint(long value) throws IOException {
+        reserve(10);
+        while((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeBytes(ByteBuffer bytes) throws IOException {
+        while(bytes.hasRemaining()) {
+            if(position == buffer.length) {
+                stream.write(buffer, 0, position);
+                position = 0;
+            }
+            int length = Math.min(bytes.remaining(), buffer.length - position);
+            bytes.get(buffer, position, length);
+            position += length;
+        }
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        while(length > 0) {
+            if(position == buffer.length) {
+                stream.write(buffer, 0, position);
+                position = 0;
+            }
+            int count = Math.min(length, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, count);
+            position += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private void reserve(int byteCount) throws IOException {
+        if(position + byteCount > buffer.length) {
+            stream.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private char[] reserveChars(int charCount) {
+        if(chars.length < charCount) {
+            chars = new char[Math.max(charCount, chars.length * 2)];
+        }
+        return chars;
+    }
+
+    private static boolean isSurrogatePair(char[] chars, int index, int charCount) {
+        return Character.isHighSurrogate(chars[index]) && index + 1 < charCount && Character.isLowSurrogate(chars[index + 1]);
+    }
+}
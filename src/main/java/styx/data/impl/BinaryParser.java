@@ -0,0 +1,209 @@
+package styx.data.impl;
+
+import static styx.data.impl.BinaryGenerator.TAG_BINARY;
+import static styx.data.impl.BinaryGenerator.TAG_COMPLEX;
+import static styx.data.impl.BinaryGenerator.TAG_DECIMAL;
+import static styx.data.impl.BinaryGenerator.TAG_DOUBLE;
+import static styx.data.impl.BinaryGenerator.TAG_INTEGER;
+import static styx.data.impl.BinaryGenerator.TAG_REFERENCE;
+import static styx.data.impl.BinaryGenerator.TAG_TEXT;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import styx.data.Pair;
+import styx.data.ParserException;
+import styx.data.Reference;
+import styx.data.Value;
+import styx.data.Values;
+
+/**
+ * A parser for the compact binary format.
+ * <p>
+ * Every value starts with a tag byte, followed by its content:
+ * <ul>
+ * <li>1: an integer number which fits into a long as a zigzag encoded varint.</li>
+ * <li>2: a number which fits into a double as an IEEE 754 double, 8 bytes big endian.</li>
+ * <li>3: any other number as the zigzag encoded varint scale, the varint length and the bytes (big endian,
+ *     two's complement) of the unscaled value.</li>
+ * <li>4: a textual value as the varint length and the UTF-8 encoded bytes.</li>
+ * <li>5: a binary value as the varint length and the raw bytes.</li>
+ * <li>6: a reference as the varint number of parts, followed by the parts.</li>
+ * <li>7: a complex value as the varint number of entries, followed by the keys and values in ascending order.</li>
+ * </ul>
+ * Varints are unsigned, 7 bits per byte, least significant group first, with the high bit set on all bytes
+ * except the last one.
+ */
+public class BinaryParser {
+
+    private static final int MAX_DEPTH = 1000; // of nested references and complex values
+
+    private final InputStream stream; // null if all input is in the buffer
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private int depth;
+
+    public BinaryParser(InputStream stream) {
+        this.stream = stream;
+        this.buffer = new byte[8192];
+    }
+
+    public BinaryParser(byte[] input, int offset, int length) {
+        this.stream = null;
+        this.buffer = input;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    public Value parse() throws IOException {
+        return read();
+    }
+
+    /**
+     * Checks if all input has been consumed.
+     */
+    public boolean eof() throws IOException {
+        return !fill(1);
+    }
+
+    private Value read() throws IOException {
+        int tag = readByte();
+        switch(tag) {
+            case TAG_INTEGER:
+                long number = readVarint();
+                return Values.number((number >>> 1) ^ -(number & 1));
+            case TAG_DOUBLE:
+                require(8);
+                long bits = 0;
+                for(int index = 0; index < 8; index++) {
+                    bits = (bits << 8) | (buffer[position++] & 0xFF);
+                }
+                return Values.number(Double.longBitsToDouble(bits));
+            case TAG_DECIMAL:
+                int scale = (int) readVarint();
+                scale = (scale >>> 1) ^ -(scale & 1);
+                int unscaledLength = readLength();
+                if(unscaledLength == 0) {
+                    throw new ParserException("Invalid binary format: empty decimal number.");
+                }
+                require(unscaledLength);
+                BigInteger unscaled = new BigInteger(Arrays.copyOfRange(buffer, position, position + unscaledLength));
+                position += unscaledLength;
+                return Values.number(new BigDecimal(unscaled, scale));
+            case TAG_TEXT:
+                int textLength = readLength();
+                require(textLength);
+                Value text;
+                try {
+                    text = Values.text(buffer, position, textLength); // validates the bytes
+                } catch(IllegalArgumentException e) {
+                    throw new ParserException("Invalid binary format: invalid UTF-8.");
+                }
+                position += textLength;
+                return text;
+            case TAG_BINARY:
+                int binaryLength = readLength();
+                require(binaryLength);
+                Value binary = Values.binary(buffer, position, binaryLength);
+                position += binaryLength;
+                return binary;
+            case TAG_REFERENCE:
+                int partCount = readLength();
+                Reference reference = Values.root();
+                enter();
+                for(int index = 0; index < partCount; index++) {
+                    reference = reference.child(read());
+                }
+                depth--;
+                return reference;
+            case TAG_COMPLEX:
+                int entryCount = readLength();
+                List<Pair> pairs = new ArrayList<>(Math.min(entryCount, 1024)); // the count is not trusted
+                Value previousKey = null;
+                enter();
+                for(int index = 0; index < entryCount; index++) {
+                    Value key = read();
+                    if(previousKey != null && previousKey.compareTo(key) >= 0) {
+                        throw new ParserException("Invalid binary format: keys not in ascending order.");
+                    }
+                    pairs.add(Values.pair(key, read()));
+                    previousKey = key;
+                }
+                depth--;
+                return Values.complex(pairs);
+            default:
+                throw new ParserException("Invalid binary format: invalid tag " + tag + ".");
+        }
+    }
+
+    private void enter() {
+        if(++depth > MAX_DEPTH) {
+            throw new ParserException("Invalid binary format: nesting too deep.");
+        }
+    }
+
+    private int readByte() throws IOException {
+        require(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    private long readVarint() throws IOException {
+        long result = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            int current = readByte();
+            result |= (long) (current & 0x7F) << shift;
+            if((current & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new ParserException("Invalid binary format: varint too long.");
+    }
+
+    private int readLength() throws IOException {
+        long length = readVarint();
+        if(length < 0 || length > Integer.MAX_VALUE - 16) {
+            throw new ParserException("Invalid binary format: invalid length.");
+        }
+        return (int) length;
+    }
+
+    private void require(int byteCount) throws IOException {
+        if(!fill(byteCount)) {
+            throw new ParserException("Unexpected EOF.");
+        }
+    }
+
+    /**
+     * Ensures that the given number of bytes is available in the buffer, starting at the current position.
+     *
+     * @return true if the bytes are available, false if the input ends before.
+     */
+    private boolean fill(int byteCount) throws IOException {
+        if(limit - position >= byteCount) {
+            return true;
+        } else if(stream == null) {
+            return false;
+        }
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+        while(limit < byteCount) {
+            if(limit == buffer.length) {
+                // grown in steps as the bytes arrive, as the requested count is not trusted
+                buffer = Arrays.copyOf(buffer, (int) Math.min(byteCount, buffer.length * 2L));
+            }
+            int count = stream.read(buffer, limit, buffer.length - limit);
+            if(count < 0) {
+                return false;
+            }
+            limit += count;
+        }
+        return true;
+    }
+}
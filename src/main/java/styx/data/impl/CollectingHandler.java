@@ -29,7 +29,7 @@ public class CollectingHandler implements Handler {
 
     @Override
     public void close() {
-        Pair pair = pair(context.peek().key, complex(context.peek().pairs));
+        Pair pair = pair(context.peek().key, complex(context.peek().pairs)); // interned by complex(), if enabled
         context.pop();
         context.peek().pairs.add(pair);
     }
@@ -4,7 +4,6 @@ import java.util.Iterator;
 
 import styx.data.Complex;
 import styx.data.Pair;
-import styx.data.Text;
 
 class FormatUtils {
 
@@ -12,10 +11,9 @@ class FormatUtils {
         return character >= '0' && character <= '9';
     }
 
-    static boolean isIdentifier(Text value) {
-        int charCount = value.charCount();
+    static boolean isIdentifier(char[] chars, int charCount) {
         for(int index = 0; index < charCount; index++) {
-            char character = value.charAt(index);
+            char character = chars[index];
             if(index == 0 && !isIdentifierStartChar(character)) {
                 return false;
             } else if(!isIdentifierChar(character)) {
@@ -45,14 +43,6 @@ class FormatUtils {
         }
     }
 
-    static char getHexChar(int digit) {
-        if(digit < 10) {
-            return (char) ('0' + digit);
-        } else {
-            return (char) ('A' + digit - 10);
-        }
-    }
-
     static boolean isTag(Complex value) {
         Iterator<Pair> it = value.iterator();
         return it.hasNext() && it.next().key().isText() && !it.hasNext();
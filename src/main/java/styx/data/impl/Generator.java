@@ -1,9 +1,8 @@
 package styx.data.impl;
 
-import static styx.data.Values.number;
-
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 
@@ -15,14 +14,21 @@ import styx.data.Pair;
 import styx.data.Reference;
 import styx.data.Text;
 import styx.data.Value;
+import styx.data.impl.value.AbstractNumeric;
 
 public class Generator {
 
+    private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+
     private final Writer writer;
+    private final char[] buffer = new char[8192]; // the output, which is written to the writer in bulk
+    private int position;
     private boolean pretty;
     private boolean indent;
     private int indentCur;
     private int indentDelta;
+    private char[] chars = new char[64];
+    private char[] indentation = new char[0]; // a newline followed by spaces
 
     public Generator(Writer writer, GeneratorOption[] options) {
         List<GeneratorOption> optionsList = Arrays.asList(options);
@@ -37,6 +43,7 @@ public class Generator {
 
     public void generate(Value value) throws IOException {
         write(value);
+        flush();
     }
 
     private void write(Value value) throws IOException {
@@ -57,87 +64,131 @@ public class Generator {
     }
 
     private void write(Numeric value) throws IOException {
-        writer.write(value.toDecimalString());
+        if(AbstractNumeric.isLong(value)) {
+            write(value.toLong());
+        } else {
+            write(value.toDecimalString());
+        }
+    }
+
+    /**
+     * Writes the decimal digits of an integer directly into the buffer.
+     */
+    private void write(long value) throws IOException {
+        if(buffer.length - position < 20) {
+            flush();
+        }
+        // the digits are computed from the negative value, so that Long.MIN_VALUE needs no special case
+        if(value < 0) {
+            buffer[position++] = '-';
+        } else {
+            value = -value;
+        }
+        int digitCount = 1;
+        for(long rest = value / 10; rest != 0; rest /= 10) {
+            digitCount++;
+        }
+        int end = position + digitCount;
+        for(int index = end - 1; index >= position; index--) {
+            buffer[index] = (char) ('0' - value % 10);
+            value /= 10;
+        }
+        position = end;
     }
 
     private void write(Text value) throws IOException {
-        if(FormatUtils.isIdentifier(value)) {
-            writer.write(value.toCharString());
+        int charCount = value.charCount();
+        char[] chars = reserveChars(charCount);
+        value.getChars(0, charCount, chars, 0);
+        if(FormatUtils.isIdentifier(chars, charCount)) {
+            write(chars, 0, charCount);
         } else {
-            writer.write('"');
-            for(int index = 0; index < value.charCount(); index++) {
-                char character = value.charAt(index);
-                switch(character) {
-                    case '\t': writer.write("\\t"); break;
-                    case '\r': writer.write("\\r"); break;
-                    case '\n': writer.write("\\n"); break;
-                    case '"':  writer.write("\\\""); break;
-                    case '\\': writer.write("\\\\"); break;
-                    default:   writer.write(character); break;
+            write('"');
+            int start = 0; // the start of the current run of characters which need no escaping
+            for(int index = 0; index < charCount; index++) {
+                char character = chars[index];
+                if(character == '\t' || character == '\r' || character == '\n' || character == '"' || character == '\\') {
+                    write(chars, start, index - start);
+                    write('\\');
+                    switch(character) {
+                        case '\t': write('t'); break;
+                        case '\r': write('r'); break;
+                        case '\n': write('n'); break;
+                        default:   write(character); break;
+                    }
+                    start = index + 1;
                 }
             }
-            writer.write('"');
+            write(chars, start, charCount - start);
+            write('"');
         }
     }
 
     private void write(Binary value) throws IOException {
-        writer.write('0');
-        writer.write('x');
-        for(int index = 0; index < value.byteCount(); index++) {
-            int unsignedByte = value.byteAt(index) & 0xFF;
-            writer.write(FormatUtils.getHexChar(unsignedByte / 16));
-            writer.write(FormatUtils.getHexChar(unsignedByte % 16));
+        write('0');
+        write('x');
+        ByteBuffer bytes = value.asReadOnlyBuffer();
+        while(bytes.hasRemaining()) {
+            if(position + 2 > buffer.length) {
+                flush();
+            }
+            int count = Math.min(bytes.remaining(), (buffer.length - position) / 2);
+            for(int index = 0; index < count; index++) {
+                int unsignedByte = bytes.get() & 0xFF;
+                buffer[position++] = HEX_CHARS[unsignedByte >>> 4];
+                buffer[position++] = HEX_CHARS[unsignedByte & 0x0F];
+            }
         }
     }
 
     private void write(Reference value) throws IOException {
-        writer.write('<');
+        write('<');
         if(!value.parent().isPresent()) {
-            writer.write('/');
+            write('/');
         }
         for(int index = 0; index < value.partCount(); index++) {
-            writer.write('/');
+            write('/');
             write(value.partAt(index));
         }
-        writer.write('>');
+        write('>');
     }
 
     private void write(Complex value) throws IOException {
         if(pretty && FormatUtils.isTag(value)) {
             Pair pair = value.iterator().next();
             write(pair.key());
-            writer.write(' ');
+            write(' ');
             write(pair.value());
         } else {
-            writer.write('{');
+            write('{');
             indentCur += indentDelta;
             boolean first = true;
-            Numeric nextAutoKey = number(1);
+            long nextAutoKey = 1;
             for(Pair pair : value) {
                 if(!first && !indent) {
-                    writer.write(',');
+                    write(',');
                 }
                 if(indent) {
                     indent(indentCur);
                 } else if(pretty) {
-                    writer.write(' ');
+                    write(' ');
                 }
                 first = false;
-                if(pair.key().compareTo(nextAutoKey) != 0) {
+                if(!isInteger(pair.key(), nextAutoKey)) {
                     if(pair.key().isComplex()) {
-                        writer.write('@');
+                        write('@');
                     }
                     boolean originalIndent = indent;
                     indent = false;
                     write(pair.key());
                     indent = originalIndent;
-                    writer.write(':');
+                    write(':');
                     if(pretty) {
-                        writer.write(' ');
+                        write(' ');
                     }
                 }
                 if(pair.key().isNumeric() && pair.key().asNumeric().isInteger()) {
-                    nextAutoKey = number(pair.key().asNumeric().toInteger() + 1);
+                    nextAutoKey = pair.key().asNumeric().toInteger() + 1L;
                 }
                 write(pair.value());
             }
@@ -145,16 +196,66 @@ public class Generator {
             if(!first && indent) {
                 indent(indentCur);
             } else if(pretty) {
-                writer.write(' ');
+                write(' ');
             }
-            writer.write('}');
+            write('}');
+        }
+    }
+
+    private char[] reserveChars(int charCount) {
+        if(chars.length < charCount) {
+            chars = new char[Math.max(charCount, chars.length * 2)];
         }
+        return chars;
     }
 
     private void indent(int num) throws IOException {
-        writer.write('\n');
-        while(num-- > 0) {
-            writer.write(' ');
+        if(indentation.length < num + 1) {
+            indentation = new char[Math.max(num + 1, indentation.length * 2)];
+            Arrays.fill(indentation, ' ');
+            indentation[0] = '\n';
+        }
+        write(indentation, 0, num + 1);
+    }
+
+    private static boolean isInteger(Value value, long number) {
+        return value.isNumeric() && value.asNumeric().isInteger() && value.asNumeric().toInteger() == number;
+    }
+
+    private void write(char character) throws IOException {
+        if(position == buffer.length) {
+            flush();
+        }
+        buffer[position++] = character;
+    }
+
+    private void write(String string) throws IOException {
+        int length = string.length();
+        if(length > buffer.length - position) {
+            flush();
+            if(length > buffer.length) {
+                writer.write(string); // too large for the buffer
+                return;
+            }
+        }
+        string.getChars(0, length, buffer, position);
+        position += length;
+    }
+
+    private void write(char[] chars, int offset, int length) throws IOException {
+        if(length > buffer.length - position) {
+            flush();
+            if(length > buffer.length) {
+                writer.write(chars, offset, length); // too large for the buffer
+                return;
+            }
         }
+        System.arraycopy(chars, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void flush() throws IOException {
+        writer.write(buffer, 0, position);
+        position = 0;
     }
 }
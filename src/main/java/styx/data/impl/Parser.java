@@ -5,27 +5,143 @@ import static styx.data.Values.number;
 import static styx.data.Values.reference;
 import static styx.data.Values.text;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import styx.data.Complex;
 import styx.data.ParserException;
 import styx.data.Reference;
 import styx.data.Value;
+import styx.data.impl.value.LazyComplex;
 
 public class Parser {
 
-    private final Reader reader;
+    private static final char EOF = 0xFFFF;
+    private static final long MAX_DOUBLE_DIGITS = 999_999_999_999_999L; // 15 digits always survive a round trip through a double
+    private static final double[] POWERS_OF_TEN = {
+            1E0, 1E1, 1E2, 1E3, 1E4, 1E5, 1E6, 1E7, 1E8, 1E9, 1E10, 1E11,
+            1E12, 1E13, 1E14, 1E15, 1E16, 1E17, 1E18, 1E19, 1E20, 1E21, 1E22 }; // all exact doubles
+
+    private static final long REGION_SIZE = 1L << 28; // the size of the regions of a file which are mapped at once
+
+    private final Reader reader; // the source of chars, or null
+    private final boolean utf8; // true if the source are UTF-8 encoded bytes
+    private final boolean lazy;
     private final FastStack<Block> stack = new FastStack<>(Block::new, Block::init);
-    private char current;
-    private char next;
+    private char[] buffer;
+    private int index; // the position of the current char in the buffer
+    private int limit;
+    private int mark = -1; // the start of the current token, which is kept in the buffer when refilling it
+    private byte[] encoded = new byte[64];
+    private char[] decoded;
+
+    private ByteBuffer bytes; // the UTF-8 encoded input, or the current block or region of it
+    private final InputStream stream; // the source of further blocks, or null
+    private final FileChannel channel; // the source of further regions, or null
+    private long channelPosition;
+    private final ByteBuffer source; // the whole UTF-8 encoded input for parsing lazy blocks, or null
+    private byte[] block; // for copying bytes out of direct buffers
+    private Scope scope; // for pull parsing
 
-    public Parser(Reader reader) throws IOException {
+    public Parser(Reader reader) {
         this.reader = reader;
-        this.current = (char) reader.read();
-        this.next = (char) reader.read();
+        this.utf8 = false;
+        this.lazy = false;
+        this.buffer = new char[8192];
+        this.stream = null;
+        this.channel = null;
+        this.source = null;
+    }
+
+    /**
+     * Constructs a parser for UTF-8 encoded bytes in memory.
+     */
+    public Parser(byte[] input, int offset, int length) {
+        this(ByteBuffer.wrap(input, offset, length), null, null, false);
+    }
+
+    /**
+     * Constructs a parser for the remaining UTF-8 encoded bytes of the given buffer (which may be direct or mapped).
+     * The position of the buffer is not changed.
+     */
+    public Parser(ByteBuffer input) {
+        this(input, false);
+    }
+
+    /**
+     * Constructs a parser for the remaining UTF-8 encoded bytes of the given buffer, like Parser(ByteBuffer).
+     * <p>
+     * If lazy parsing is enabled, nested blocks are skipped like for Parser(String, boolean), and parse their
+     * block of the buffer on first access, so the content of the buffer must not change afterwards.
+     */
+    public Parser(ByteBuffer input, boolean lazy) {
+        this(input.duplicate(), null, null, lazy);
+    }
+
+    /**
+     * Constructs a parser for a UTF-8 encoded stream, which is read in blocks.
+     */
+    public Parser(InputStream stream) {
+        this((ByteBuffer) ByteBuffer.wrap(new byte[8192]).limit(0), stream, null, false);
+    }
+
+    /**
+     * Constructs a parser for a UTF-8 encoded file, which is read through memory mapped regions.
+     */
+    public Parser(FileChannel channel) {
+        this(ByteBuffer.allocate(0), null, channel, false);
+    }
+
+    /**
+     * The UTF-8 encoded input is not decoded as a whole: the syntax is pure ASCII apart from the content of
+     * quoted textual values. The bytes are widened to chars one by one (ASCII keeps its value), and only the
+     * content of textual values is converted back to the original bytes and taken as UTF-8.
+     * <p>
+     * Since every byte is widened to exactly one char, the position of a char in the input follows from the
+     * position of the bytes, which lazy blocks use to refer to the input.
+     */
+    private Parser(ByteBuffer bytes, InputStream stream, FileChannel channel, boolean lazy) {
+        this.reader = null;
+        this.utf8 = true;
+        this.lazy = lazy;
+        this.buffer = new char[8192];
+        this.bytes = bytes;
+        this.stream = stream;
+        this.channel = channel;
+        this.source = lazy ? bytes.duplicate() : null;
+    }
+
+    /**
+     * Constructs a parser for text in memory.
+     * <p>
+     * The whole text is held in the buffer, so it is never refilled and tokens are taken directly from the text.
+     * <p>
+     * If lazy parsing is enabled, nested blocks ('{' ... '}') are only checked for balanced braces and skipped.
+     * They are returned as LazyComplex instances, which parse their block of the source on first access.
+     */
+    public Parser(String source, boolean lazy) {
+        this(source.toCharArray(), 0, lazy);
+    }
+
+    private Parser(char[] source, int offset, boolean lazy) {
+        this.reader = null;
+        this.utf8 = false;
+        this.lazy = lazy;
+        this.buffer = source;
+        this.index = offset;
+        this.limit = source.length;
+        this.stream = null;
+        this.channel = null;
+        this.source = null;
     }
 
     public Value parse() throws IOException {
@@ -35,73 +151,158 @@ public class Parser {
     }
 
     private void parse(Handler handler) throws IOException {
-        boolean lineHasKey = false;
-        List<Value> lineValues = new ArrayList<>();
-        boolean isParsingNested = stack.size() > 0;
-        Block top = stack.push();
-        while(true) {
-            boolean isAtTop = (stack.peek() == top);
-            readWS();
-            Value next = readSimple();
-            if(next != null) {
-                lineValues.add(next);
-            } else if(peek() == '@' && !isAtTop) {
-                skip();
-                lineValues.add(readComplex());
-            } else if(eof() || peek() == '\n' || (peek() == ',' && !isAtTop) || (peek() == '}' && !isAtTop)) {
-                if(!lineValues.isEmpty()) {
-                    if(!lineHasKey) {
-                        lineValues.add(0, number(stack.peek().nextAutoKey++));
-                    }
-                    for(int i = 0; i < lineValues.size()-2; i++) {
-                        handler.open(lineValues.get(i));
-                    }
-                    handler.value(lineValues.get(lineValues.size()-2), lineValues.get(lineValues.size()-1));
-                    for(int i = 0; i < lineValues.size()-2; i++) {
-                        handler.close();
-                    }
-                    stack.peek().elementCount++;
+        Scope scope = begin();
+        while(parseNext(handler, scope)) {
+        }
+    }
+
+    /**
+     * Parses the input step by step (for pull parsing), each step reports the events of the next token to the
+     * given handler, which may be none.
+     *
+     * @return false if the end of the input has been reached.
+     */
+    public boolean parseNext(Handler handler) throws IOException {
+        if(scope == null) {
+            scope = begin();
+        }
+        return parseNext(handler, scope);
+    }
+
+    private Scope begin() {
+        Scope scope = new Scope();
+        scope.isParsingNested = stack.size() > 0;
+        scope.top = stack.push();
+        return scope;
+    }
+
+    private boolean parseNext(Handler handler, Scope scope) throws IOException {
+        boolean isAtTop = (stack.peek() == scope.top);
+        readWS();
+        Value next = readSimple();
+        if(next != null) {
+            scope.lineValues.add(next);
+        } else if(peek() == '@' && !isAtTop) {
+            skip();
+            scope.lineValues.add(readComplex());
+        } else if(eof() || peek() == '\n' || (peek() == ',' && !isAtTop) || (peek() == '}' && !isAtTop)) {
+            if(!scope.lineValues.isEmpty()) {
+                emitLine(handler, scope.lineValues, scope.lineHasKey);
+            }
+            if(eof()) {
+                if(stack.size() > 1 || stack.peek().elementCount == 0) {
+                    throw new ParserException("Unexpected EOF.");
                 }
-                if(eof()) {
-                    break;
-                } else if(peek() == '}') {
-                    for(int i = 0; i < stack.peek().levelCount; i++) {
-                        handler.close();
-                    }
+                return false;
+            } else if(peek() == '}') {
+                for(int i = 0; i < stack.peek().levelCount; i++) {
+                    handler.close();
+                }
+                stack.pop();
+                stack.peek().elementCount++;
+                if(scope.isParsingNested && stack.peek() == scope.top) {
                     stack.pop();
-                    stack.peek().elementCount++;
-                    if(isParsingNested && stack.peek() == top) {
-                        stack.pop();
+                    skip();
+                    return false;
+                }
+            }
+            scope.lineHasKey = false;
+            scope.lineValues.clear();
+            skip();
+        } else if(peek() == '{' && lazy && (!scope.isParsingNested || !isAtTop)) {
+            if(utf8) {
+                ByteBuffer input = source;
+                int offset = bytes.position() - (limit - index); // the chars not yet consumed map to the last bytes read
+                skipBlock();
+                scope.lineValues.add(LazyComplex.of(() -> parseBlock(input, offset)));
+            } else {
+                char[] input = buffer;
+                int offset = index;
+                skipBlock();
+                scope.lineValues.add(LazyComplex.of(() -> parseBlock(input, offset)));
+            }
+            emitLine(handler, scope.lineValues, scope.lineHasKey);
+            scope.lineHasKey = false;
+            scope.lineValues.clear();
+        } else if(peek() == '{') {
+            if(!scope.lineHasKey) {
+                scope.lineValues.add(0, number(stack.peek().nextAutoKey++));
+            }
+            for(int i=0; i<scope.lineValues.size(); i++) {
+                handler.open(scope.lineValues.get(i));
+            }
+            stack.push().levelCount = scope.lineValues.size();
+            scope.lineHasKey = false;
+            scope.lineValues.clear();
+            skip();
+        } else if(peek() == ':' && !isAtTop && !scope.lineHasKey && scope.lineValues.size() == 1) {
+            if(scope.lineValues.get(0).isNumeric() && scope.lineValues.get(0).asNumeric().isInteger()) {
+                stack.peek().nextAutoKey = scope.lineValues.get(0).asNumeric().toInteger() + 1;
+            }
+            scope.lineHasKey = true;
+            skip();
+        } else {
+            throw new ParserException("Unexpected token '" + peek() + "'.");
+        }
+        return true;
+    }
+
+    private void emitLine(Handler handler, List<Value> lineValues, boolean lineHasKey) {
+        if(!lineHasKey) {
+            lineValues.add(0, number(stack.peek().nextAutoKey++));
+        }
+        for(int i = 0; i < lineValues.size()-2; i++) {
+            handler.open(lineValues.get(i));
+        }
+        handler.value(lineValues.get(lineValues.size()-2), lineValues.get(lineValues.size()-1));
+        for(int i = 0; i < lineValues.size()-2; i++) {
+            handler.close();
+        }
+        stack.peek().elementCount++;
+    }
+
+    private void skipBlock() throws IOException {
+        int depth = 0;
+        do {
+            if(eof()) {
+                throw new ParserException("Unexpected EOF.");
+            }
+            char character = read();
+            if(character == '{') {
+                depth++;
+            } else if(character == '}') {
+                depth--;
+            } else if(character == '"') {
+                // braces within textual values do not count, only the closing '"' has to be found
+                while(!eof() && peek() != '"') {
+                    if(read() == '\\' && !eof()) {
                         skip();
-                        return;
                     }
                 }
-                lineHasKey = false;
-                lineValues.clear();
-                skip();
-            } else if(peek() == '{') {
-                if(!lineHasKey) {
-                    lineValues.add(0, number(stack.peek().nextAutoKey++));
-                }
-                for(int i=0; i<lineValues.size(); i++) {
-                    handler.open(lineValues.get(i));
-                }
-                stack.push().levelCount = lineValues.size();
-                lineHasKey = false;
-                lineValues.clear();
-                skip();
-            } else if(peek() == ':' && !isAtTop && !lineHasKey && lineValues.size() == 1) {
-                if(lineValues.get(0).isNumeric() && lineValues.get(0).asNumeric().isInteger()) {
-                    stack.peek().nextAutoKey = lineValues.get(0).asNumeric().toInteger() + 1;
+                if(eof()) {
+                    throw new ParserException("Invalid textual value: closing '\"' expected.");
                 }
-                lineHasKey = true;
                 skip();
-            } else {
-                throw new ParserException("Unexpected token '" + peek() + "'.");
             }
-        }
-        if(stack.size() > 1 || stack.peek().elementCount == 0) {
-            throw new ParserException("Unexpected EOF.");
+        } while(depth > 0);
+    }
+
+    private static Complex parseBlock(char[] source, int offset) {
+        return parseBlock(new Parser(source, offset, true));
+    }
+
+    private static Complex parseBlock(ByteBuffer source, int offset) {
+        ByteBuffer input = source.duplicate();
+        input.position(offset);
+        return parseBlock(new Parser(input, null, null, true));
+    }
+
+    private static Complex parseBlock(Parser parser) {
+        try {
+            parser.stack.push(); // the block is parsed like a nested value, which ends with its closing '}'
+            return parser.readComplex().asComplex();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -114,46 +315,73 @@ public class Parser {
     private Value readSimple() throws IOException {
         if(!eof()) {
             if(FormatUtils.isIdentifierStartChar(peek())) {
-                StringBuilder sb = new StringBuilder();
-                sb.append(read());
-                while(FormatUtils.isIdentifierChar(peek())) {
-                    sb.append(read());
+                mark = index;
+                do {
+                    index++;
+                } while(FormatUtils.isIdentifierChar(peek()));
+                // identifiers are pure ASCII, so the characters can be converted to UTF-8 bytes directly
+                int length = index - mark;
+                byte[] identifier = reserveEncoded(length);
+                for(int i = 0; i < length; i++) {
+                    identifier[i] = (byte) buffer[mark + i];
                 }
-                return text(sb.toString());
+                mark = -1;
+                return text(identifier, 0, length);
             }
             if(peek() == '"') {
                 skip();
-                StringBuilder sb = new StringBuilder();
-                while(!eof() && peek() != '"') {
-                    if(peek() == '\\') {
-                        skip();
-                        if(!eof()) {
-                            char character = read();
-                            switch(character) {
-                                case 't':  sb.append('\t'); break;
-                                case 'r':  sb.append('\r'); break;
-                                case 'n':  sb.append('\n'); break;
-                                case '"':  sb.append('\"'); break;
-                                case '\\': sb.append('\\'); break;
-                                default:
-                                    throw new ParserException("Invalid textual value: invalid escape sequence '\\" + character + "'.");
-                            }
+                StringBuilder sb = null; // only needed if there are escape sequences
+                mark = index;
+                while(true) {
+                    while(index < limit && buffer[index] != '"' && buffer[index] != '\\') {
+                        index++;
+                    }
+                    if(eof()) {
+                        throw new ParserException("Invalid textual value: closing '\"' expected.");
+                    } else if(peek() == '"') {
+                        break;
+                    } else if(peek() != '\\') {
+                        continue; // the end of the buffer has been reached, it has been refilled
+                    }
+                    if(sb == null) {
+                        sb = new StringBuilder();
+                    }
+                    sb.append(buffer, mark, index - mark);
+                    skip();
+                    if(!eof()) {
+                        char character = read();
+                        switch(character) {
+                            case 't':  sb.append('\t'); break;
+                            case 'r':  sb.append('\r'); break;
+                            case 'n':  sb.append('\n'); break;
+                            case '"':  sb.append('\"'); break;
+                            case '\\': sb.append('\\'); break;
+                            default:
+                                throw new ParserException("Invalid textual value: invalid escape sequence '\\" + character + "'.");
                         }
-                    } else {
-                        sb.append(read());
                     }
+                    mark = index;
                 }
-                if(eof()) {
-                    throw new ParserException("Invalid textual value: closing '\"' expected.");
+                Value value;
+                if(sb == null) {
+                    value = toText(buffer, mark, index - mark);
+                } else {
+                    sb.append(buffer, mark, index - mark);
+                    if(decoded == null || decoded.length < sb.length()) {
+                        decoded = new char[Math.max(sb.length(), 64)];
+                    }
+                    sb.getChars(0, sb.length(), decoded, 0);
+                    value = toText(decoded, 0, sb.length());
                 }
+                mark = -1;
                 skip();
-                return text(sb.toString());
+                return value;
             }
             if(peek() == '0' && peekNext() == 'x') {
                 skip(); skip();
-                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                mark = index;
                 while(FormatUtils.isHexChar(peek()) && FormatUtils.isHexChar(peekNext())) {
-                    bytes.write((FormatUtils.getHexDigit(read()) << 4) + FormatUtils.getHexDigit(read()));
+                    index += 2;
                 }
                 if(FormatUtils.isHexChar(peek())) {
                     throw new ParserException("Invalid binary value: even number of digits expected.");
@@ -161,33 +389,15 @@ public class Parser {
                 if(FormatUtils.isIdentifierChar(peek())) {
                     throw new ParserException("Invalid binary value: unexpected token '" + peek() + "'.");
                 }
-                return binary(bytes.toByteArray());
+                byte[] bytes = new byte[(index - mark) / 2];
+                for(int i = 0; i < bytes.length; i++) {
+                    bytes[i] = (byte) ((FormatUtils.getHexDigit(buffer[mark + 2 * i]) << 4) + FormatUtils.getHexDigit(buffer[mark + 2 * i + 1]));
+                }
+                mark = -1;
+                return binary(bytes);
             }
             if(FormatUtils.isDigit(peek()) || peek() == '-') {
-                StringBuilder sb = new StringBuilder();
-                sb.append(read());
-                while(FormatUtils.isDigit(peek())) {
-                    sb.append(read());
-                }
-                if(peek() == '.') {
-                    sb.append(read());
-                    while(FormatUtils.isDigit(peek())) {
-                        sb.append(read());
-                    }
-                }
-                if(peek() == 'E') {
-                    sb.append(read());
-                    if(peek() == '-') {
-                        sb.append(read());
-                    }
-                    while(FormatUtils.isDigit(peek())) {
-                        sb.append(read());
-                    }
-                }
-                if(FormatUtils.isIdentifierChar(peek()) || peek() == '-' || peek() == '.') {
-                    throw new ParserException("Invalid numeric value: unexpected token '" + peek() + "'.");
-                }
-                return number(Double.valueOf(sb.toString()));
+                return readNumber();
             }
             if(peek() == '<') {
                 skip();
@@ -226,6 +436,133 @@ public class Parser {
         return null;
     }
 
+    /**
+     * Reads a number without allocating intermediate objects.
+     * <p>
+     * The digits are accumulated in a long (negatively, like Long.parseLong(), so that Long.MIN_VALUE fits).
+     * Integers that fit into a long are returned exactly. Other numbers with at most 15 significant digits and
+     * a small negative exponent are computed as a single correctly rounded double division, which yields the
+     * double whose decimal string is the number. All other numbers (like integers beyond the range of a long or
+     * numbers with more digits than a double can hold) are parsed exactly as decimals.
+     */
+    private Value readNumber() throws IOException {
+        mark = index;
+        boolean negative = peek() == '-';
+        if(negative) {
+            index++;
+        }
+        long significand = 0; // negative
+        boolean overflow = false;
+        boolean hasDigits = false;
+        boolean isInteger = true;
+        int fractionDigits = 0;
+        char character;
+        while(FormatUtils.isDigit(character = peek())) {
+            int digit = character - '0';
+            if(significand >= (Long.MIN_VALUE + digit) / 10) {
+                significand = significand * 10 - digit;
+            } else {
+                overflow = true;
+            }
+            hasDigits = true;
+            index++;
+        }
+        if(peek() == '.') {
+            isInteger = false;
+            index++;
+            while(FormatUtils.isDigit(character = peek())) {
+                int digit = character - '0';
+                if(significand >= (Long.MIN_VALUE + digit) / 10) {
+                    significand = significand * 10 - digit;
+                    fractionDigits++;
+                } else {
+                    overflow = true;
+                }
+                hasDigits = true;
+                index++;
+            }
+        }
+        int exponent = 0;
+        if(peek() == 'E') {
+            isInteger = false;
+            index++;
+            boolean negativeExponent = peek() == '-';
+            if(negativeExponent) {
+                index++;
+            }
+            boolean hasExponentDigits = false;
+            while(FormatUtils.isDigit(character = peek())) {
+                if(exponent < 100_000_000) {
+                    exponent = exponent * 10 + (character - '0');
+                } else {
+                    overflow = true;
+                }
+                hasExponentDigits = true;
+                index++;
+            }
+            hasDigits &= hasExponentDigits;
+            if(negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        if(FormatUtils.isIdentifierChar(peek()) || peek() == '-' || peek() == '.') {
+            throw new ParserException("Invalid numeric value: unexpected token '" + peek() + "'.");
+        }
+        if(!hasDigits) {
+            throw new ParserException("Invalid numeric value: digits expected.");
+        }
+        if(!overflow && (negative || significand != Long.MIN_VALUE)) {
+            long value = negative ? significand : -significand;
+            int powerOfTen = exponent - fractionDigits;
+            if(isInteger) {
+                mark = -1;
+                return number(value);
+            } else if(powerOfTen >= 0 && powerOfTen <= 18) {
+                long multiplier = (long) POWERS_OF_TEN[powerOfTen];
+                if(value >= -Long.MAX_VALUE / multiplier && value <= Long.MAX_VALUE / multiplier) {
+                    mark = -1;
+                    return number(value * multiplier);
+                }
+            } else if(powerOfTen < 0 && -powerOfTen < POWERS_OF_TEN.length && value >= -MAX_DOUBLE_DIGITS && value <= MAX_DOUBLE_DIGITS) {
+                // both operands are exact doubles, so the quotient is rounded only once
+                mark = -1;
+                return number((double) value / POWERS_OF_TEN[-powerOfTen]);
+            }
+        }
+        try {
+            return number(new BigDecimal(buffer, mark, index - mark));
+        } catch(NumberFormatException e) {
+            throw new ParserException("Invalid numeric value: " + e.getMessage());
+        } finally {
+            mark = -1;
+        }
+    }
+
+    /**
+     * Creates a textual value from the given chars, which are the original bytes if the input is UTF-8 encoded.
+     */
+    private Value toText(char[] chars, int offset, int length) {
+        if(!utf8) {
+            return text(new String(chars, offset, length));
+        }
+        byte[] bytes = reserveEncoded(length);
+        for(int i = 0; i < length; i++) {
+            bytes[i] = (byte) chars[offset + i];
+        }
+        try {
+            return text(bytes, 0, length); // validates the bytes
+        } catch(IllegalArgumentException e) {
+            throw new ParserException("Invalid textual value: invalid UTF-8.");
+        }
+    }
+
+    private byte[] reserveEncoded(int length) {
+        if(encoded.length < length) {
+            encoded = new byte[Math.max(length, encoded.length * 2)];
+        }
+        return encoded;
+    }
+
     private Value readComplex() throws IOException {
         readWS();
         if(peek() != '{') {
@@ -237,27 +574,111 @@ public class Parser {
     }
 
     private char read() throws IOException {
-        char result = current;
-        current = next;
-        next = (char) reader.read();
+        char result = peek();
+        skip();
         return result;
     }
 
-    private void skip() throws IOException {
-        current = next;
-        next = (char) reader.read();
+    /**
+     * Skips the current char, which must have been peeked before.
+     */
+    private void skip() {
+        if(index < limit) {
+            index++;
+        }
+    }
+
+    private boolean eof() throws IOException {
+        return index >= limit && !fill(1);
+    }
+
+    private char peek() throws IOException {
+        return index < limit || fill(1) ? buffer[index] : EOF;
     }
 
-    private boolean eof() {
-        return current == 0xFFFF;
+    private char peekNext() throws IOException {
+        return index + 1 < limit || fill(2) ? buffer[index + 1] : EOF;
     }
 
-    private char peek() {
-        return current;
+    /**
+     * Reads the next block of input into the buffer, until the given number of chars is available from the current
+     * position. The chars before the current position are discarded, unless they belong to the current token.
+     *
+     * @return true if the chars are available, false if the input ends before.
+     */
+    private boolean fill(int charCount) throws IOException {
+        if(reader == null && !utf8) {
+            return false;
+        }
+        int keep = mark >= 0 ? mark : index;
+        System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+        limit -= keep;
+        index -= keep;
+        if(mark >= 0) {
+            mark = 0;
+        }
+        while(limit - index < charCount) {
+            if(limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int count = reader != null ? reader.read(buffer, limit, buffer.length - limit) : readBytes(buffer, limit, buffer.length - limit);
+            if(count < 0) {
+                return false;
+            }
+            limit += count;
+        }
+        return true;
+    }
+
+    /**
+     * Reads UTF-8 encoded bytes as chars, see Parser(ByteBuffer, InputStream, FileChannel).
+     *
+     * @return the number of chars read, or -1 at the end of the input.
+     */
+    private int readBytes(char[] target, int offset, int length) throws IOException {
+        while(!bytes.hasRemaining()) {
+            if(stream != null) {
+                int count = stream.read(bytes.array(), 0, bytes.capacity());
+                if(count < 0) {
+                    return -1;
+                }
+                bytes.position(0);
+                bytes.limit(count);
+            } else if(channel != null && channelPosition < channel.size()) {
+                long size = Math.min(channel.size() - channelPosition, REGION_SIZE);
+                bytes = channel.map(MapMode.READ_ONLY, channelPosition, size);
+                channelPosition += size;
+            } else {
+                return -1;
+            }
+        }
+        int count = Math.min(length, bytes.remaining());
+        byte[] source;
+        int sourceOffset;
+        if(bytes.hasArray()) {
+            source = bytes.array();
+            sourceOffset = bytes.arrayOffset() + bytes.position();
+            bytes.position(bytes.position() + count);
+        } else {
+            if(block == null) {
+                block = new byte[8192];
+            }
+            count = Math.min(count, block.length);
+            bytes.get(block, 0, count);
+            source = block;
+            sourceOffset = 0;
+        }
+        for(int i = 0; i < count; i++) {
+            target[offset + i] = (char) (source[sourceOffset + i] & 0xFF);
+        }
+        return count;
     }
 
-    private char peekNext() {
-        return next;
+    private static class Scope {
+        private boolean lineHasKey;
+        private final List<Value> lineValues = new ArrayList<>();
+        private boolean isParsingNested;
+        private Block top;
     }
 
     private static class Block {
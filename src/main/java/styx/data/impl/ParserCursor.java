@@ -0,0 +1,124 @@
+package styx.data.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import styx.data.Cursor;
+import styx.data.InvalidAccessException;
+import styx.data.Value;
+
+/**
+ * A cursor which pulls the events from a parser step by step, collecting the events of one step in a queue.
+ */
+public class ParserCursor implements Cursor {
+
+    private final Parser parser;
+    private final Closeable resource; // closed with the cursor, or null
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    private final List<Value> openKeys = new ArrayList<>();
+    private final Handler handler = new QueueingHandler();
+    private Entry current;
+    private boolean finished;
+
+    public ParserCursor(Parser parser, Closeable resource) {
+        this.parser = parser;
+        this.resource = resource;
+    }
+
+    @Override
+    public boolean next() {
+        try {
+            while(pending.isEmpty() && !finished) {
+                finished = !parser.parseNext(handler); // the last step may still report events
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        current = pending.poll();
+        return current != null;
+    }
+
+    @Override
+    public Event event() {
+        return current != null ? current.event : null;
+    }
+
+    @Override
+    public Value key() {
+        if(current == null) {
+            throw new InvalidAccessException("There is no current event.");
+        }
+        return current.key;
+    }
+
+    @Override
+    public Value value() {
+        if(current == null || current.event != Event.VALUE) {
+            throw new InvalidAccessException("The current event is not a value.");
+        }
+        return current.value;
+    }
+
+    @Override
+    public int depth() {
+        return current != null ? current.depth : 0;
+    }
+
+    @Override
+    public void skipChildren() {
+        if(current == null || current.event != Event.OPEN) {
+            throw new InvalidAccessException("The current event is not the opening of a complex value.");
+        }
+        int depth = current.depth;
+        while(next() && (current.event != Event.CLOSE || current.depth != depth)) {
+        }
+    }
+
+    @Override
+    public void close() {
+        if(resource != null) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private class QueueingHandler implements Handler {
+
+        @Override
+        public void open(Value key) {
+            pending.add(new Entry(Event.OPEN, key, null, openKeys.size()));
+            openKeys.add(key);
+        }
+
+        @Override
+        public void value(Value key, Value value) {
+            pending.add(new Entry(Event.VALUE, key, value, openKeys.size()));
+        }
+
+        @Override
+        public void close() {
+            Value key = openKeys.remove(openKeys.size() - 1);
+            pending.add(new Entry(Event.CLOSE, key, null, openKeys.size()));
+        }
+    }
+
+    private static class Entry {
+        private final Event event;
+        private final Value key;
+        private final Value value;
+        private final int depth;
+        private Entry(Event event, Value key, Value value, int depth) {
+            this.event = event;
+            this.key = key;
+            this.value = value;
+            this.depth = depth;
+        }
+    }
+}
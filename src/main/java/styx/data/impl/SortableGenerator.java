@@ -0,0 +1,185 @@
+package styx.data.impl;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import styx.data.Binary;
+import styx.data.Complex;
+import styx.data.Numeric;
+import styx.data.Pair;
+import styx.data.Reference;
+import styx.data.Text;
+import styx.data.Value;
+import styx.data.impl.value.AbstractNumeric;
+
+/**
+ * A generator for the sortable binary format, see SortableParser.
+ */
+public class SortableGenerator {
+
+    static final int END = 0x00;
+    static final int ESCAPE = 0xFF;
+    static final int TERMINATOR = 0x01;
+
+    static final int SMALL_EXPONENT = 0x70;
+    static final int LARGE_NEGATIVE_EXPONENT = 0x0F;
+    static final int LARGE_POSITIVE_EXPONENT = 0xF0;
+
+    static final int TAG_NEGATIVE_INFINITY = 0x10;
+    static final int TAG_NEGATIVE = 0x11;
+    static final int TAG_ZERO = 0x12;
+    static final int TAG_POSITIVE = 0x13;
+    static final int TAG_POSITIVE_INFINITY = 0x14;
+    static final int TAG_NAN = 0x15;
+    static final int TAG_TEXT = 0x20;
+    static final int TAG_BINARY = 0x30;
+    static final int TAG_REFERENCE = 0x40;
+    static final int TAG_COMPLEX = 0x50;
+
+    private byte[] buffer = new byte[64];
+    private int position;
+    private char[] chars = new char[64];
+
+    public byte[] generate(Value value) {
+        position = 0;
+        write(value);
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void write(Value value) {
+        switch(value.kind()) {
+            case NUMBER:
+                write(value.asNumeric()); break;
+            case TEXT:
+                write(value.asText()); break;
+            case BINARY:
+                write(value.asBinary()); break;
+            case REFERENCE:
+                write(value.asReference()); break;
+            case COMPLEX:
+                write(value.asComplex()); break;
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    private void write(Numeric value) {
+        String digits;
+        long exponent;
+        boolean negative;
+        if(AbstractNumeric.isLong(value)) {
+            long number = value.toLong();
+            negative = number < 0;
+            digits = Long.toString(number);
+            if(negative) {
+                digits = digits.substring(1);
+            }
+            exponent = digits.length();
+        } else if(AbstractNumeric.isDouble(value) && !Double.isFinite(value.toDouble())) {
+            double number = value.toDouble();
+            writeByte(Double.isNaN(number) ? TAG_NAN : number > 0 ? TAG_POSITIVE_INFINITY : TAG_NEGATIVE_INFINITY);
+            return;
+        } else {
+            BigDecimal decimal = value.toBigDecimal();
+            negative = decimal.signum() < 0;
+            digits = decimal.unscaledValue().abs().toString();
+            exponent = (long) digits.length() - decimal.scale();
+        }
+        int length = digits.length();
+        while(length > 0 && digits.charAt(length - 1) == '0') {
+            length--;
+        }
+        if(length == 0) {
+            writeByte(TAG_ZERO);
+            return;
+        }
+        // the value is 0.<digits> * 10^exponent, negative numbers are written inverted, which reverses their order
+        int mask = negative ? 0xFF : 0x00;
+        writeByte(negative ? TAG_NEGATIVE : TAG_POSITIVE);
+        if(exponent > -SMALL_EXPONENT && exponent < SMALL_EXPONENT) {
+            writeByte((int) (exponent + 0x80) ^ mask);
+        } else {
+            writeByte((exponent < 0 ? LARGE_NEGATIVE_EXPONENT : LARGE_POSITIVE_EXPONENT) ^ mask);
+            long biased = exponent ^ Long.MIN_VALUE;
+            for(int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (biased >>> shift) ^ mask);
+            }
+        }
+        for(int index = 0; index < length; index += 2) {
+            int pair = (digits.charAt(index) - '0') * 10 + (index + 1 < length ? digits.charAt(index + 1) - '0' : 0);
+            writeByte((pair + 1) ^ mask); // two digits per byte, between 1 and 100
+        }
+        writeByte(END ^ mask);
+    }
+
+    private void write(Text value) {
+        writeByte(TAG_TEXT);
+        int charCount = value.charCount();
+        char[] chars = reserveChars(charCount);
+        value.getChars(0, charCount, chars, 0);
+        for(int index = 0; index < charCount; index++) {
+            // every char (including surrogates) is written separately, as in UTF-8, which preserves their order
+            char character = chars[index];
+            if(character == 0) {
+                writeByte(END);
+                writeByte(ESCAPE);
+            } else if(character < 0x80) {
+                writeByte(character);
+            } else if(character < 0x800) {
+                writeByte(0xC0 | (character >> 6));
+                writeByte(0x80 | (character & 0x3F));
+            } else {
+                writeByte(0xE0 | (character >> 12));
+                writeByte(0x80 | ((character >> 6) & 0x3F));
+                writeByte(0x80 | (character & 0x3F));
+            }
+        }
+        writeByte(END);
+        writeByte(TERMINATOR);
+    }
+
+    private void write(Binary value) {
+        writeByte(TAG_BINARY);
+        int byteCount = value.byteCount();
+        for(int index = 0; index < byteCount; index++) {
+            int current = value.byteAt(index) & 0xFF;
+            writeByte(current);
+            if(current == END) {
+                writeByte(ESCAPE);
+            }
+        }
+        writeByte(END);
+        writeByte(TERMINATOR);
+    }
+
+    private void write(Reference value) {
+        writeByte(TAG_REFERENCE);
+        for(int index = 0; index < value.partCount(); index++) {
+            write(value.partAt(index));
+        }
+        writeByte(END);
+    }
+
+    private void write(Complex value) {
+        writeByte(TAG_COMPLEX);
+        for(Pair pair : value) {
+            write(pair.key());
+            write(pair.value());
+        }
+        writeByte(END);
+    }
+
+    private void writeByte(int value) {
+        if(position == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private char[] reserveChars(int charCount) {
+        if(chars.length < charCount) {
+            chars = new char[Math.max(charCount, chars.length * 2)];
+        }
+        return chars;
+    }
+}
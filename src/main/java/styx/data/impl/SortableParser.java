@@ -0,0 +1,183 @@
+package styx.data.impl;
+
+import static styx.data.impl.SortableGenerator.END;
+import static styx.data.impl.SortableGenerator.ESCAPE;
+import static styx.data.impl.SortableGenerator.LARGE_NEGATIVE_EXPONENT;
+import static styx.data.impl.SortableGenerator.LARGE_POSITIVE_EXPONENT;
+import static styx.data.impl.SortableGenerator.TAG_BINARY;
+import static styx.data.impl.SortableGenerator.TAG_COMPLEX;
+import static styx.data.impl.SortableGenerator.TAG_NAN;
+import static styx.data.impl.SortableGenerator.TAG_NEGATIVE;
+import static styx.data.impl.SortableGenerator.TAG_NEGATIVE_INFINITY;
+import static styx.data.impl.SortableGenerator.TAG_POSITIVE;
+import static styx.data.impl.SortableGenerator.TAG_POSITIVE_INFINITY;
+import static styx.data.impl.SortableGenerator.TAG_REFERENCE;
+import static styx.data.impl.SortableGenerator.TAG_TEXT;
+import static styx.data.impl.SortableGenerator.TAG_ZERO;
+import static styx.data.impl.SortableGenerator.TERMINATOR;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import styx.data.Pair;
+import styx.data.ParserException;
+import styx.data.Reference;
+import styx.data.Value;
+import styx.data.Values;
+
+/**
+ * A parser for the sortable binary format.
+ * <p>
+ * The format is designed such that the unsigned, lexicographic order of the encoded bytes equals the order
+ * of the values (see Value.compareTo()), so that the bytes can be stored and compared without parsing, for
+ * example as keys of a database. Every value starts with a tag byte, which are ordered like the kinds:
+ * <ul>
+ * <li>0x10 .. 0x15: a number (-Infinity, negative, zero, positive, Infinity, NaN). Finite non-zero numbers
+ *     are represented as 0.d1d2d3... * 10^exponent. The exponent is written as a single biased byte if it is
+ *     small, and as a marker byte and eight bytes otherwise. Then the digits follow, two per byte (as 1..100),
+ *     without trailing zeros, and the byte 0x00. All bytes after the tag are inverted for negative numbers.</li>
+ * <li>0x20: a textual value as the (modified) UTF-8 encoding of its chars, where every char including
+ *     surrogates is encoded separately, so that the order of UTF-16 code units is kept.</li>
+ * <li>0x30: a binary value as its bytes.</li>
+ * <li>0x40: a reference as its parts, followed by 0x00.</li>
+ * <li>0x50: a complex value as its keys and values in ascending order, followed by 0x00.</li>
+ * </ul>
+ * Within textual and binary values, the byte 0x00 is escaped as 0x00 0xFF, and the value ends with 0x00 0x01.
+ * Because all tags are greater than 0x00, shorter sequences are ordered before longer ones with the same prefix.
+ */
+public class SortableParser {
+
+    private final byte[] input;
+    private int position;
+    private final int limit;
+
+    public SortableParser(byte[] input, int offset, int length) {
+        this.input = input;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    public Value parse() {
+        Value value = read();
+        if(position != limit) {
+            throw new ParserException("Invalid sortable format: unexpected data after the value.");
+        }
+        return value;
+    }
+
+    private Value read() {
+        int tag = readByte();
+        switch(tag) {
+            case TAG_NEGATIVE_INFINITY:
+                return Values.number(Double.NEGATIVE_INFINITY);
+            case TAG_ZERO:
+                return Values.number(0);
+            case TAG_POSITIVE_INFINITY:
+                return Values.number(Double.POSITIVE_INFINITY);
+            case TAG_NAN:
+                return Values.number(Double.NaN);
+            case TAG_NEGATIVE:
+            case TAG_POSITIVE:
+                return readNumber(tag == TAG_NEGATIVE ? 0xFF : 0x00);
+            case TAG_TEXT:
+                byte[] bytes = readEscaped();
+                char[] chars = new char[bytes.length];
+                int charCount = 0;
+                for(int index = 0; index < bytes.length; ) {
+                    int lead = bytes[index++] & 0xFF;
+                    if(lead < 0x80) {
+                        chars[charCount++] = (char) lead;
+                    } else if(lead >= 0xC0 && lead < 0xE0 && index < bytes.length) {
+                        chars[charCount++] = (char) (((lead & 0x1F) << 6) | (bytes[index++] & 0x3F));
+                    } else if(lead >= 0xE0 && lead < 0xF0 && index + 1 < bytes.length) {
+                        chars[charCount++] = (char) (((lead & 0x0F) << 12) | ((bytes[index++] & 0x3F) << 6) | (bytes[index++] & 0x3F));
+                    } else {
+                        throw new ParserException("Invalid sortable format: invalid character.");
+                    }
+                }
+                return Values.text(new String(chars, 0, charCount));
+            case TAG_BINARY:
+                return Values.binary(readEscaped());
+            case TAG_REFERENCE:
+                Reference reference = Values.root();
+                while(peekByte() != END) {
+                    reference = reference.child(read());
+                }
+                position++;
+                return reference;
+            case TAG_COMPLEX:
+                List<Pair> pairs = new ArrayList<>();
+                while(peekByte() != END) {
+                    Value key = read();
+                    pairs.add(Values.pair(key, read()));
+                }
+                position++;
+                return Values.complex(pairs);
+            default:
+                throw new ParserException("Invalid sortable format: invalid tag " + tag + ".");
+        }
+    }
+
+    private Value readNumber(int mask) {
+        long exponent;
+        int marker = readByte() ^ mask;
+        if(marker == LARGE_NEGATIVE_EXPONENT || marker == LARGE_POSITIVE_EXPONENT) {
+            long biased = 0;
+            for(int index = 0; index < 8; index++) {
+                biased = (biased << 8) | (readByte() ^ mask);
+            }
+            exponent = biased ^ Long.MIN_VALUE;
+        } else {
+            exponent = marker - 0x80;
+        }
+        StringBuilder digits = new StringBuilder();
+        int pair;
+        while((pair = readByte() ^ mask) != END) {
+            if(pair > 100) {
+                throw new ParserException("Invalid sortable format: invalid digits.");
+            }
+            digits.append((char) ('0' + (pair - 1) / 10)).append((char) ('0' + (pair - 1) % 10));
+        }
+        if(digits.length() == 0) {
+            throw new ParserException("Invalid sortable format: invalid digits.");
+        }
+        long scale = digits.length() - exponent;
+        if(scale < Integer.MIN_VALUE || scale > Integer.MAX_VALUE) {
+            throw new ParserException("Invalid sortable format: invalid exponent.");
+        }
+        BigInteger unscaled = new BigInteger(digits.toString());
+        return Values.number(new BigDecimal(mask != 0 ? unscaled.negate() : unscaled, (int) scale));
+    }
+
+    private byte[] readEscaped() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        while(true) {
+            int current = readByte();
+            if(current != END) {
+                bytes.write(current);
+            } else if(readByte() == ESCAPE) {
+                bytes.write(END);
+            } else if(input[position - 1] == TERMINATOR) {
+                return bytes.toByteArray();
+            } else {
+                throw new ParserException("Invalid sortable format: invalid escape sequence.");
+            }
+        }
+    }
+
+    private int readByte() {
+        int current = peekByte();
+        position++;
+        return current;
+    }
+
+    private int peekByte() {
+        if(position >= limit) {
+            throw new ParserException("Unexpected EOF.");
+        }
+        return input[position] & 0xFF;
+    }
+}
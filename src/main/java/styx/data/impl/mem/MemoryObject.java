@@ -11,6 +11,7 @@ import styx.data.Complex;
 import styx.data.InvalidAccessException;
 import styx.data.Pair;
 import styx.data.Value;
+import styx.data.impl.value.BinaryTreeComplex;
 
 /**
  * A mutable object, identified by a reference.
@@ -105,14 +106,22 @@ class MemoryObject {
         return child;
     }
 
-    Stream<Pair> browse() {
+    /**
+     * Returns the children of the object whose keys are in the given range (an O(log n) seek in the value).
+     *
+     * @param fromKey the lower bound (inclusive), null for no lower bound.
+     * @param toKey the upper bound (exclusive), null for no upper bound.
+     * @return the children, where complex values are represented by empty values.
+     * @throws InvalidAccessException if the value is non-existing or non-complex.
+     */
+    Stream<Pair> browse(Value fromKey, Value toKey) {
         Value value = read();
         if(value == null) {
             throw new InvalidAccessException("Attempt to browse children of a non-existing value.");
         } else if(!value.isComplex()) {
             throw new InvalidAccessException("Attempt to browse children of a non-complex value.");
         } else {
-            return value.asComplex().entries().
+            return value.asComplex().subMap(fromKey, toKey).entries().
                     map(p -> pair(p.key(), p.value().isComplex() ? complex() : p.value()));
         }
     }
@@ -134,14 +143,21 @@ class MemoryObject {
             if(value == null || !value.isComplex()) {
                 throw new IllegalStateException(); // should not happen: previous write to non-existing child.
             }
+            // For trees, buffer the modified children in a builder, which applies them sorted in one O(m log(n/m + 1)) pass,
+            // so that nodes are copied only once even if many children have been modified.
             Complex valc = value.asComplex(); // never called for non-complex values.
+            BinaryTreeComplex.Builder builder = valc instanceof BinaryTreeComplex ? BinaryTreeComplex.builder(valc) : null;
             for(MemoryObject child : children.values()) {
                 if((child.flags & FLAG_MODIFIED) != 0) {
-                    valc = valc.put(child.key, child.read());
+                    if(builder != null) {
+                        builder.put(child.key, child.read());
+                    } else {
+                        valc = valc.put(child.key, child.read());
+                    }
                     child.flags &= ~FLAG_MODIFIED;
                 }
             }
-            value = valc;
+            value = builder != null ? builder.build() : valc;
             flags &= ~FLAG_CHILD;
         }
         return value;
@@ -10,6 +10,7 @@ import styx.data.Pair;
 import styx.data.Reference;
 import styx.data.Store;
 import styx.data.Value;
+import styx.data.Values;
 
 class MemoryStore implements Store {
 
@@ -32,7 +33,12 @@ class MemoryStore implements Store {
 
     @Override
     public Stream<Pair> browse(Reference ref) {
-        return lookup(Objects.requireNonNull(ref)).browse();
+        return lookup(Objects.requireNonNull(ref)).browse(null, null);
+    }
+
+    @Override
+    public Stream<Pair> browse(Reference ref, Value fromKey, Value toKey) {
+        return lookup(Objects.requireNonNull(ref)).browse(fromKey, toKey);
     }
 
     @Override
@@ -45,6 +51,15 @@ class MemoryStore implements Store {
         lookup(Objects.requireNonNull(ref)).write(value);
     }
 
+    /**
+     * Estimates the value held by the store, where all nodes not modified since the last estimate are memoized.
+     */
+    @Override
+    public long estimateSize(Reference ref) {
+        Value value = lookup(Objects.requireNonNull(ref)).read();
+        return value == null ? 0 : Values.estimateSize(value);
+    }
+
     private MemoryObject lookup(Reference ref) {
         MemoryObject object = root;
         int count = ref.partCount();
@@ -0,0 +1,90 @@
+package styx.data.impl.value;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+import styx.data.Complex;
+import styx.data.Kind;
+import styx.data.Pair;
+import styx.data.Value;
+
+/**
+ * The base class of the implementations of complex values.
+ * <p>
+ * All implementations are compared entry by entry in the order of their keys, and their hash code is the sum
+ * of the hash codes of their key/value-pairs (as defined by java.util.Map.Entry). Therefore, equal complex
+ * values are equal and have equal hash codes regardless of their internal representation.
+ */
+abstract class AbstractComplex extends AbstractValue implements Complex {
+
+    @Override
+    public int compareTo(Value other) {
+        if(other.isComplex()) {
+            return compare(this, other.asComplex());
+        } else {
+            return compare(kind(), other.kind());
+        }
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.COMPLEX;
+    }
+
+    /**
+     * Returns a spliterator over the entries, which is SIZED and splits into halves by position.
+     */
+    @Override
+    public Spliterator<Pair> spliterator() {
+        return new ComplexSpliterator(this, 0, size());
+    }
+
+    /**
+     * Returns an iterator over the entries, starting at the given position in key order.
+     * <p>
+     * The default implementation uses entryAt(), subclasses should override it if that is not cheap.
+     *
+     * @param fromIndex the zero-based position of the first entry, between 0 and size().
+     * @return the iterator, never null.
+     */
+    protected Iterator<Pair> iterator(int fromIndex) {
+        return new Iterator<Pair>() {
+            private int index = fromIndex;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public Pair next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return entryAt(index++);
+            }
+        };
+    }
+
+    private static int compare(Complex a, Complex b) {
+        if(a == b) {
+            return 0; // shortcut for shared or interned values
+        }
+        Iterator<Pair> iteratorA = a.iterator();
+        Iterator<Pair> iteratorB = b.iterator();
+        while(iteratorA.hasNext() && iteratorB.hasNext()) {
+            Pair pairA = iteratorA.next();
+            Pair pairB = iteratorB.next();
+            int keyOrder = pairA.key().compareTo(pairB.key());
+            if(keyOrder != 0) {
+                return keyOrder;
+            }
+            int valueOrder = pairA.value().compareTo(pairB.value());
+            if(valueOrder != 0) {
+                return valueOrder;
+            }
+        }
+        return Boolean.compare(iteratorA.hasNext(), iteratorB.hasNext());
+    }
+}
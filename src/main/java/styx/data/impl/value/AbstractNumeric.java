@@ -1,11 +1,25 @@
 package styx.data.impl.value;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
 import styx.data.Kind;
 import styx.data.Numeric;
 import styx.data.Value;
 
+/**
+ * The base class of the implementations of numeric values.
+ * <p>
+ * Every number has exactly one (canonical) representation, in the following order of preference:
+ * IntegerNumeric, LongNumeric, DoubleNumeric and BigDecimalNumeric. A DoubleNumeric represents the decimal
+ * number given by its shortest decimal string (as returned by Double.toString()), not the exact binary value.
+ */
 public abstract class AbstractNumeric extends AbstractValue implements Numeric {
 
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+    private static final BigDecimal MAX_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+
     public static Numeric valueOf(long value) {
         if(value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
             return new IntegerNumeric((int) value);
@@ -16,17 +30,71 @@ public abstract class AbstractNumeric extends AbstractValue implements Numeric {
 
     public static Numeric valueOf(double value) {
         long longValue = (long) value; // perform a lossy conversion
-        if(longValue == value) {
-            return valueOf(longValue); // the conversion was lossless
+        if(longValue == value && longValue != Long.MAX_VALUE) {
+            return valueOf(longValue); // the conversion was lossless (2^63 is saturated to Long.MAX_VALUE)
         } else {
             return new DoubleNumeric(value);
         }
     }
 
+    public static Numeric valueOf(BigDecimal value) {
+        Objects.requireNonNull(value);
+        if(value.signum() == 0) {
+            return valueOf(0);
+        }
+        BigDecimal stripped = value.stripTrailingZeros();
+        if(stripped.scale() <= 0 && stripped.precision() - stripped.scale() <= 19) {
+            try {
+                return valueOf(stripped.longValueExact());
+            } catch(ArithmeticException e) {
+                // fall through: out of range for a long
+            }
+        }
+        double doubleValue = stripped.doubleValue();
+        if(!Double.isInfinite(doubleValue) && BigDecimal.valueOf(doubleValue).compareTo(stripped) == 0) {
+            return new DoubleNumeric(doubleValue);
+        } else {
+            return new BigDecimalNumeric(stripped);
+        }
+    }
+
+    /**
+     * Returns the index that follows the given greatest numeric key of a complex value.
+     *
+     * @param max the greatest numeric key, must not be null.
+     * @return the integral part of the key plus one, at least one.
+     * @throws ArithmeticException if the result cannot be represented by a long.
+     */
+    static long nextIndex(Numeric max) {
+        if(isLong(max)) {
+            if(max.toLong() == Long.MAX_VALUE) {
+                throw new ArithmeticException("The next index cannot be represented by a long.");
+            }
+            return Math.max(max.toLong(), 0) + 1;
+        }
+        if(isDouble(max)) {
+            double value = max.toDouble();
+            if(value < 0) {
+                return 1; // including -Infinity
+            } else if(Double.isNaN(value) || value >= 0x1p63) {
+                throw new ArithmeticException("The next index cannot be represented by a long.");
+            }
+            return (long) Math.floor(value) + 1; // less than 2^63 - 1, as 2^63 - 1024 is the previous double
+        }
+        BigDecimal value = max.toBigDecimal();
+        if(value.signum() < 0) {
+            return 1;
+        } else if(value.compareTo(MAX_LONG) >= 0) {
+            // checked before rounding, which would expand numbers with a huge exponent
+            throw new ArithmeticException("The next index cannot be represented by a long.");
+        }
+        return value.setScale(0, RoundingMode.FLOOR).longValueExact() + 1;
+    }
+
     @Override
     public int compareTo(Value other) {
         if(other.isNumeric()) {
-            return Double.compare(toDouble(), other.asNumeric().toDouble());
+            return compare(this, other.asNumeric());
         } else {
             return compare(kind(), other.kind());
         }
@@ -56,4 +124,61 @@ public abstract class AbstractNumeric extends AbstractValue implements Numeric {
     public double toDouble() {
         throw new ArithmeticException("The number cannot be represented exactly by a double.");
     }
+
+    /**
+     * Compares two numbers exactly.
+     * <p>
+     * Pairs of the same representation are compared directly. Only mixed pairs that cannot be compared
+     * exactly as longs or doubles are compared as decimals.
+     */
+    private static int compare(Numeric a, Numeric b) {
+        if(a == b) {
+            return 0;
+        }
+        if(a instanceof IntegerNumeric && b instanceof IntegerNumeric) {
+            return Integer.compare(a.toInteger(), b.toInteger());
+        }
+        if(isLong(a) && isLong(b)) {
+            return Long.compare(a.toLong(), b.toLong());
+        }
+        if(a instanceof DoubleNumeric && b instanceof DoubleNumeric) {
+            return Double.compare(a.toDouble(), b.toDouble());
+        }
+        if(isLong(a) && b instanceof DoubleNumeric && isExactDouble(a.toLong())) {
+            return Double.compare(a.toLong(), b.toDouble());
+        }
+        if(a instanceof DoubleNumeric && isLong(b) && isExactDouble(b.toLong())) {
+            return Double.compare(a.toDouble(), b.toLong());
+        }
+        if(!isFinite(a) || !isFinite(b)) {
+            return Double.compare(toInfinite(a), toInfinite(b));
+        }
+        return a.toBigDecimal().compareTo(b.toBigDecimal());
+    }
+
+    /**
+     * Checks if the given number is represented by a long, so that toLong() succeeds.
+     */
+    public static boolean isLong(Numeric value) {
+        return value instanceof IntegerNumeric || value instanceof LongNumeric;
+    }
+
+    /**
+     * Checks if the given number is represented by a double (which is not an integer), so that toDouble() succeeds.
+     */
+    public static boolean isDouble(Numeric value) {
+        return value instanceof DoubleNumeric;
+    }
+
+    private static boolean isExactDouble(long value) {
+        return value >= -MAX_EXACT_DOUBLE && value <= MAX_EXACT_DOUBLE;
+    }
+
+    private static boolean isFinite(Numeric value) {
+        return !(value instanceof DoubleNumeric) || Double.isFinite(value.toDouble());
+    }
+
+    private static double toInfinite(Numeric value) {
+        return isFinite(value) ? 0.0 : value.toDouble(); // all finite values are between -Infinity and Infinity (or NaN)
+    }
 }
@@ -14,16 +14,39 @@ abstract class AbstractValue implements Value {
 
     @Override
     public boolean equals(Object other) {
-        if(other instanceof Value) {
+        if(other == this) {
+            return true;
+        } else if(other instanceof Value) {
             return compareTo((Value) other) == 0;
         } else {
             return false;
         }
     }
 
+    /**
+     * Returns a hash code that is consistent with compareTo().
+     * <p>
+     * Implementations must compute the hash code structurally from the contents of the value (and never from
+     * its textual representation), such that equal values have equal hash codes regardless of their internal
+     * representation.
+     */
     @Override
-    public int hashCode() {
-        return toString().hashCode();
+    public abstract int hashCode();
+
+    /**
+     * Adds the shallow sizes of the objects of this value to the given estimate, and the parts of the value.
+     * <p>
+     * The value itself has already been marked as counted, objects which can be shared must be marked, too.
+     */
+    abstract void footprint(ValueFootprint footprint);
+
+    /**
+     * Returns the estimate of ValueFootprint.retainedSize().
+     * <p>
+     * Implementations of complex values memoize the result, so that it is computed only once per node.
+     */
+    long retainedSize() {
+        return ValueFootprint.retainedSize(this);
     }
 
     protected static int compare(Kind a, Kind b) {
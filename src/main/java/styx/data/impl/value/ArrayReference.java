@@ -0,0 +1,200 @@
+package styx.data.impl.value;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import styx.data.Kind;
+import styx.data.Reference;
+import styx.data.Value;
+
+/**
+ * An implementation of a reference value as an immutable array of parts, interned in a prefix trie.
+ * <p>
+ * Users never create instances directly. Instead, references can be constructed by starting with the
+ * empty node (which is exposed by the public static field ROOT) and using the child() method to add parts.
+ * <p>
+ * Every node keeps a table of its children, which are held weakly. As long as a reference is in use,
+ * child() returns the same instance for the same part, so that repeatedly addressing the same path
+ * neither allocates nor copies, and equal references are usually identical (which makes comparing them cheap).
+ * Besides that, every node holds all of its parts, so that partAt() takes constant time.
+ */
+public class ArrayReference extends AbstractValue implements Reference {
+
+    /** the starting point for working with reference values */
+    public static final Reference ROOT = new ArrayReference();
+
+    /** the queue of children that are no longer in use */
+    private static final ReferenceQueue<ArrayReference> queue = new ReferenceQueue<>();
+
+    /** the parent node, never null except for root */
+    private final ArrayReference parent;
+
+    /** all parts, the last one is the part that was appended to the parent */
+    private final Value[] parts;
+
+    /** the hash code, same as for LinkedListReference */
+    private final int hash;
+
+    /** the table of children, null until the first child is created */
+    private volatile ConcurrentMap<Value, Child> children;
+
+    private ArrayReference() {
+        this.parent = null;
+        this.parts = new Value[0];
+        this.hash = 0;
+    }
+
+    private ArrayReference(ArrayReference parent, Value lastPart) {
+        this.parent = Objects.requireNonNull(parent);
+        this.parts = Arrays.copyOf(parent.parts, parent.parts.length + 1);
+        this.parts[parent.parts.length] = Objects.requireNonNull(lastPart);
+        this.hash = 31 * parent.hash + lastPart.hashCode();
+    }
+
+    @Override
+    public int compareTo(Value other) {
+        if(other.isReference()) {
+            return compare(this, other.asReference());
+        } else {
+            return compare(kind(), other.kind());
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        if(parent != null) {
+            footprint.count(kind(), ValueFootprint.object(3, 4) + ValueFootprint.referenceArray(parts.length));
+            footprint.value(parts[parts.length - 1]);
+            footprint.value(parent);
+        }
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.REFERENCE;
+    }
+
+    @Override
+    public int partCount() {
+        return parts.length;
+    }
+
+    @Override
+    public Value partAt(int index) {
+        return parts[index];
+    }
+
+    @Override
+    public Optional<Reference> parent() {
+        return Optional.ofNullable(parent);
+    }
+
+    @Override
+    public Reference child(Value value) {
+        Objects.requireNonNull(value);
+        expungeStaleChildren();
+        ConcurrentMap<Value, Child> children = children();
+        while(true) {
+            Child existing = children.get(value);
+            ArrayReference child = existing != null ? existing.get() : null;
+            if(child != null) {
+                return child;
+            }
+            child = new ArrayReference(this, value);
+            Child created = new Child(child, children, value);
+            if(existing == null ? children.putIfAbsent(value, created) == null : children.replace(value, existing, created)) {
+                return child;
+            }
+        }
+    }
+
+    @Override
+    public boolean isAncestorOf(Reference other) {
+        if(other instanceof ArrayReference) {
+            return other.partCount() > parts.length && ((ArrayReference) other).ancestor(parts.length) == this;
+        } else {
+            return Reference.super.isAncestorOf(other);
+        }
+    }
+
+    @Override
+    public Reference commonPrefix(Reference other) {
+        int commonCount = Math.min(parts.length, other.partCount());
+        int index = 0;
+        while(index < commonCount && parts[index].equals(other.partAt(index))) {
+            index++;
+        }
+        return ancestor(index);
+    }
+
+    /**
+     * Returns the ancestor with the given number of parts.
+     */
+    private ArrayReference ancestor(int partCount) {
+        ArrayReference current = this;
+        while(current.parts.length > partCount) {
+            current = current.parent;
+        }
+        return current;
+    }
+
+    private ConcurrentMap<Value, Child> children() {
+        ConcurrentMap<Value, Child> result = children;
+        if(result == null) {
+            synchronized(this) {
+                result = children;
+                if(result == null) {
+                    result = children = new ConcurrentHashMap<>(4);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void expungeStaleChildren() {
+        Object stale;
+        while((stale = queue.poll()) != null) {
+            Child child = (Child) stale;
+            child.table.remove(child.key, child);
+        }
+    }
+
+    private static int compare(Reference a, Reference b) {
+        if(a == b) {
+            return 0; // shortcut for shared or interned values
+        }
+        int commonCount = Math.min(a.partCount(), b.partCount());
+        for(int index = 0; index < commonCount; index++) {
+            int order = a.partAt(index).compareTo(b.partAt(index));
+            if(order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(a.partCount(), b.partCount());
+    }
+
+    /**
+     * A weakly referenced entry in the table of children, which knows how to remove itself.
+     */
+    private static class Child extends WeakReference<ArrayReference> {
+
+        private final ConcurrentMap<Value, Child> table;
+        private final Value key;
+
+        private Child(ArrayReference child, ConcurrentMap<Value, Child> table, Value key) {
+            super(child, queue);
+            this.table = table;
+            this.key = key;
+        }
+    }
+}
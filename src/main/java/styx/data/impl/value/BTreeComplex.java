@@ -0,0 +1,897 @@
+package styx.data.impl.value;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BinaryOperator;
+
+import styx.data.Complex;
+import styx.data.Kind;
+import styx.data.Pair;
+import styx.data.Reference;
+import styx.data.Value;
+import styx.data.Values;
+
+/**
+ * An implementation of a large complex value as an immutable B+ tree.
+ * <p>
+ * Users never create instances directly. Instead, BinaryTreeComplex picks this implementation automatically
+ * when a value with at least MIN_SIZE entries is built in bulk (for example by Values.complex() or the parser).
+ * <p>
+ * All entries are stored in leaves of between MAX_WIDTH / 2 and MAX_WIDTH keys and values, which are held in
+ * sorted arrays, and every inner node holds between MAX_WIDTH / 2 and MAX_WIDTH children. Compared to a binary
+ * tree, a lookup visits only a few nodes, a modification copies only a few (but larger) nodes, and iterating
+ * walks through arrays. Inner nodes also hold the number of entries of their subtree, so that size(), entryAt()
+ * and rankOf() are supported as for BinaryTreeComplex.
+ * <p>
+ * Every inner node holds the first key of all but its first child as separators. Separators are not updated
+ * when the first key of a child is removed, since they are still valid to route lookups.
+ * <p>
+ * Splitting and concatenating take O(log n) time: the nodes along the boundary are sliced or joined, and all
+ * other nodes are shared. Nodes along the boundary may hold fewer than MAX_WIDTH / 2 entries or children
+ * afterwards, which costs some space but no correctness, since all leaves remain at the same level. The other
+ * bulk operations iterate over the smaller of both values. Like for BinaryTreeComplex, the hash code and the
+ * estimate of the retained size are memoized in every node, so that nodes which are shared between values are
+ * hashed and estimated only once.
+ */
+public class BTreeComplex extends AbstractComplex {
+
+    /** the minimum number of entries for choosing this implementation */
+    static final int MIN_SIZE = 1024;
+
+    private static final int MAX_WIDTH = 32;
+    private static final int MIN_WIDTH = MAX_WIDTH / 2;
+
+    /** the root node, never empty */
+    private final Node root;
+
+    /** the number of levels, 1 if the root is a leaf */
+    private final int height;
+
+    private BTreeComplex(Node root, int height) {
+        this.root = root;
+        this.height = height;
+    }
+
+    /**
+     * Constructs a complex value from the given pairs.
+     *
+     * @param pairs the pairs, with strictly ascending keys.
+     * @param count the number of pairs to use, at least one.
+     * @return the complex value, never null.
+     */
+    static BTreeComplex valueOf(Pair[] pairs, int count) {
+        // Build the leaves, distributing the entries evenly, and then the levels above them.
+        Node[] nodes = new Node[(count + MAX_WIDTH - 1) / MAX_WIDTH];
+        for(int index = 0; index < nodes.length; index++) {
+            int from = (int) ((long) count * index / nodes.length);
+            int to = (int) ((long) count * (index + 1) / nodes.length);
+            Value[] keys = new Value[to - from];
+            Value[] values = new Value[to - from];
+            for(int pos = from; pos < to; pos++) {
+                keys[pos - from] = pairs[pos].key();
+                values[pos - from] = pairs[pos].value();
+            }
+            nodes[index] = new Leaf(keys, values);
+        }
+        int height = 1;
+        while(nodes.length > 1) {
+            Node[] parents = new Node[(nodes.length + MAX_WIDTH - 1) / MAX_WIDTH];
+            for(int index = 0; index < parents.length; index++) {
+                int from = nodes.length * index / parents.length;
+                int to = nodes.length * (index + 1) / parents.length;
+                parents[index] = Inner.of(Arrays.copyOfRange(nodes, from, to));
+            }
+            nodes = parents;
+            height++;
+        }
+        return new BTreeComplex(nodes[0], height);
+    }
+
+    @Override
+    public int hashCode() {
+        return root.hashCode();
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(1, 12));
+        footprint(footprint, root);
+    }
+
+    @Override
+    long retainedSize() {
+        return ValueFootprint.object(1, 12) + root.retainedSize();
+    }
+
+    @Override
+    public Iterator<Pair> iterator() {
+        return new NodeIterator(0);
+    }
+
+    @Override
+    protected Iterator<Pair> iterator(int fromIndex) {
+        return new NodeIterator(fromIndex);
+    }
+
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    @Override
+    public Pair entryAt(int index) {
+        if(index < 0 || index >= root.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + root.size);
+        }
+        Node node = root;
+        while(node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = 0;
+            while(index >= inner.children[child].size) {
+                index -= inner.children[child++].size;
+            }
+            node = inner.children[child];
+        }
+        Leaf leaf = (Leaf) node;
+        return Values.pair(leaf.keys[index], leaf.values[index]);
+    }
+
+    @Override
+    public int rankOf(Value key) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        int rank = 0;
+        Node node = root;
+        while(node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = inner.childIndex(key);
+            for(int index = 0; index < child; index++) {
+                rank += inner.children[index].size;
+            }
+            node = inner.children[child];
+        }
+        int index = Arrays.binarySearch(node.keys, key);
+        return rank + (index >= 0 ? index : -(index + 1));
+    }
+
+    @Override
+    public Optional<Value> get(Value key) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        Node node = root;
+        while(node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[inner.childIndex(key)];
+        }
+        int index = Arrays.binarySearch(node.keys, key);
+        return index >= 0 ? Optional.of(((Leaf) node).values[index]) : Optional.empty();
+    }
+
+    @Override
+    public Complex put(Value key, Value value) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        if(value == null) {
+            Node newRoot = root.remove(key);
+            if(newRoot == root) {
+                return this;
+            }
+            int newHeight = height;
+            while(newRoot instanceof Inner && ((Inner) newRoot).children.length == 1) {
+                newRoot = ((Inner) newRoot).children[0]; // remove a level
+                newHeight--;
+            }
+            return newRoot.size == 0 ? BinaryTreeComplex.EMPTY : new BTreeComplex(newRoot, newHeight);
+        } else {
+            Node[] newNodes = root.put(key, value);
+            if(newNodes.length == 1) {
+                return newNodes[0] == root ? this : new BTreeComplex(newNodes[0], height);
+            } else {
+                return new BTreeComplex(Inner.of(newNodes), height + 1); // add a level
+            }
+        }
+    }
+
+    @Override
+    public long nextIndex() {
+        Value max = root.maxNumericKey();
+        return max == null ? 1 : AbstractNumeric.nextIndex(max.asNumeric());
+    }
+
+    @Override
+    public Complex headMap(Value toKey) {
+        return slice(0, rankOf(toKey));
+    }
+
+    @Override
+    public Complex tailMap(Value fromKey) {
+        return slice(rankOf(fromKey), root.size);
+    }
+
+    @Override
+    public Complex subMap(Value fromKey, Value toKey) {
+        if(fromKey != null && toKey != null && fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("The lower bound must not be greater than the upper bound.");
+        }
+        return slice(fromKey == null ? 0 : rankOf(fromKey), toKey == null ? root.size : rankOf(toKey));
+    }
+
+    @Override
+    public Complex[] split(Value key) {
+        int rank = rankOf(key);
+        return new Complex[] { slice(0, rank), slice(rank, root.size) };
+    }
+
+    @Override
+    public Complex concat(Complex other) {
+        if(other.size() == 0) {
+            return this;
+        }
+        if(root.lastKey().compareTo(other.entryAt(0).key()) >= 0) {
+            throw new IllegalArgumentException("The keys of the values overlap.");
+        }
+        other = LazyComplex.unwrap(other);
+        BTreeComplex right = other instanceof BTreeComplex ? (BTreeComplex) other :
+                valueOf(other.allEntries().toArray(new Pair[0]), other.size());
+        return join(this, right);
+    }
+
+    @Override
+    public Complex merge(Complex other, BinaryOperator<Value> conflict) {
+        Objects.requireNonNull(conflict);
+        if(other.size() <= root.size) {
+            Complex current = this;
+            for(Pair pair : other) {
+                Optional<Value> existing = get(pair.key());
+                current = current.put(pair.key(), existing.isPresent() ? conflict.apply(existing.get(), pair.value()) : pair.value());
+            }
+            return current;
+        } else {
+            Complex current = other; // put the entries of the smaller value into the larger one
+            for(Pair pair : this) {
+                Optional<Value> existing = other.get(pair.key());
+                current = current.put(pair.key(), existing.isPresent() ? conflict.apply(pair.value(), existing.get()) : pair.value());
+            }
+            return current;
+        }
+    }
+
+    @Override
+    public Complex intersect(Complex other) {
+        List<Pair> pairs = new ArrayList<>();
+        if(other.size() <= root.size) {
+            for(Value key : other.allKeys()) {
+                Optional<Value> value = get(key);
+                if(value.isPresent()) {
+                    pairs.add(Values.pair(key, value.get()));
+                }
+            }
+        } else {
+            for(Pair pair : this) {
+                if(other.get(pair.key()).isPresent()) {
+                    pairs.add(pair);
+                }
+            }
+        }
+        return pairs.size() == root.size ? this : Values.complex(pairs);
+    }
+
+    @Override
+    public Complex difference(Complex other) {
+        if(other.size() <= root.size) {
+            Complex current = this;
+            for(Value key : other.allKeys()) {
+                current = current.put(key, null);
+            }
+            return current;
+        } else {
+            List<Pair> pairs = new ArrayList<>();
+            for(Pair pair : this) {
+                if(!other.get(pair.key()).isPresent()) {
+                    pairs.add(pair);
+                }
+            }
+            return pairs.size() == root.size ? this : Values.complex(pairs);
+        }
+    }
+
+    /**
+     * Compares two trees for ComplexDiff, skipping shared nodes.
+     * <p>
+     * Both trees are walked in key order, each with a stack of the nodes and entries still to visit. If both
+     * stacks start with the same node, it is skipped, otherwise the node with the lower first key is expanded
+     * into its children (or entries), so that only the nodes which differ are visited.
+     */
+    static void diff(ComplexDiff diff, Reference path, BTreeComplex oldTree, BTreeComplex newTree) {
+        Deque<Object> oldStack = new ArrayDeque<>();
+        Deque<Object> newStack = new ArrayDeque<>();
+        oldStack.push(oldTree.root);
+        newStack.push(newTree.root);
+        while(!oldStack.isEmpty() || !newStack.isEmpty()) {
+            Object oldTop = oldStack.peek();
+            Object newTop = newStack.peek();
+            if(oldTop == newTop) {
+                oldStack.pop(); // shared node
+                newStack.pop();
+                continue;
+            }
+            int order = oldTop == null ? 1 : newTop == null ? -1 : firstKey(oldTop).compareTo(firstKey(newTop));
+            if(order == 0 && oldTop instanceof Node && newTop instanceof Node) {
+                order = Integer.compare(((Node) newTop).size, ((Node) oldTop).size); // expand the larger one
+            }
+            if(order <= 0 && oldTop instanceof Node) {
+                expand(oldStack);
+            } else if(order >= 0 && newTop instanceof Node) {
+                expand(newStack);
+            } else if(order < 0) {
+                Pair oldPair = (Pair) oldStack.pop();
+                diff.entry(path, oldPair.key(), oldPair.value(), null);
+            } else if(order > 0) {
+                Pair newPair = (Pair) newStack.pop();
+                diff.entry(path, newPair.key(), null, newPair.value());
+            } else {
+                Pair oldPair = (Pair) oldStack.pop();
+                Pair newPair = (Pair) newStack.pop();
+                diff.entry(path, oldPair.key(), oldPair.value(), newPair.value());
+            }
+        }
+    }
+
+    private static Value firstKey(Object top) {
+        return top instanceof Node ? ((Node) top).firstKey() : ((Pair) top).key();
+    }
+
+    /**
+     * Replaces the node at the top of the given stack with its children or entries, the first one on top.
+     */
+    private static void expand(Deque<Object> stack) {
+        Node node = (Node) stack.pop();
+        if(node instanceof Leaf) {
+            Value[] values = ((Leaf) node).values;
+            for(int index = node.keys.length - 1; index >= 0; index--) {
+                stack.push(Values.pair(node.keys[index], values[index]));
+            }
+        } else {
+            Node[] children = ((Inner) node).children;
+            for(int index = children.length - 1; index >= 0; index--) {
+                stack.push(children[index]);
+            }
+        }
+    }
+
+    /**
+     * Returns the entries at the positions from fromIndex (inclusive) to toIndex (exclusive).
+     */
+    private Complex slice(int fromIndex, int toIndex) {
+        if(fromIndex == 0 && toIndex == root.size) {
+            return this;
+        }
+        BTreeComplex result = slice(root, height, fromIndex, toIndex);
+        return result == null ? BinaryTreeComplex.EMPTY : result;
+    }
+
+    /**
+     * Returns the entries of the given subtree at the given positions, or null if there are none.
+     * <p>
+     * Children which are covered completely are shared, and only the first and the last child are sliced
+     * recursively, so that O(log n) nodes are created.
+     */
+    private static BTreeComplex slice(Node node, int height, int fromIndex, int toIndex) {
+        if(fromIndex >= toIndex) {
+            return null;
+        } else if(fromIndex == 0 && toIndex == node.size) {
+            return new BTreeComplex(node, height);
+        } else if(node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            return new BTreeComplex(new Leaf(Arrays.copyOfRange(leaf.keys, fromIndex, toIndex),
+                    Arrays.copyOfRange(leaf.values, fromIndex, toIndex)), 1);
+        }
+        Node[] children = ((Inner) node).children;
+        int first = 0;
+        while(fromIndex >= children[first].size) {
+            fromIndex -= children[first].size;
+            toIndex -= children[first++].size;
+        }
+        int last = first;
+        while(toIndex > children[last].size) {
+            toIndex -= children[last++].size;
+        }
+        if(first == last) {
+            return slice(children[first], height - 1, fromIndex, toIndex);
+        }
+        BTreeComplex middle = last - first == 1 ? null : last - first == 2 ?
+                new BTreeComplex(children[first + 1], height - 1) :
+                new BTreeComplex(Inner.of(Arrays.copyOfRange(children, first + 1, last)), height);
+        return join(join(slice(children[first], height - 1, fromIndex, children[first].size), middle),
+                slice(children[last], height - 1, 0, toIndex));
+    }
+
+    /**
+     * Joins two trees, where all keys of a are less than the keys of b, either of which can be null.
+     * <p>
+     * The lower tree is combined with the outermost node of the same level of the higher one, which takes time
+     * proportional to the difference of their heights.
+     */
+    private static BTreeComplex join(BTreeComplex a, BTreeComplex b) {
+        if(a == null) {
+            return b;
+        } else if(b == null) {
+            return a;
+        }
+        Node[] nodes = a.height >= b.height ?
+                joinRight(a.root, a.height - b.height, b.root) :
+                joinLeft(a.root, b.height - a.height, b.root);
+        int height = Math.max(a.height, b.height);
+        return nodes.length == 1 ? new BTreeComplex(nodes[0], height) : new BTreeComplex(Inner.of(nodes), height + 1);
+    }
+
+    /**
+     * Joins node b to the right edge of node a, which has the given number of levels more.
+     */
+    private static Node[] joinRight(Node a, int levels, Node b) {
+        if(levels == 0) {
+            return combine(a, b);
+        }
+        Node[] children = ((Inner) a).children;
+        Node[] nodes = joinRight(children[children.length - 1], levels - 1, b);
+        return inner(concat(Arrays.copyOf(children, children.length - 1), nodes));
+    }
+
+    /**
+     * Joins node a to the left edge of node b, which has the given number of levels more.
+     */
+    private static Node[] joinLeft(Node a, int levels, Node b) {
+        if(levels == 0) {
+            return combine(a, b);
+        }
+        Node[] children = ((Inner) b).children;
+        Node[] nodes = joinLeft(a, levels - 1, children[0]);
+        return inner(concat(nodes, Arrays.copyOfRange(children, 1, children.length)));
+    }
+
+    /**
+     * Returns one inner node with the given children, or two if they do not fit into one.
+     */
+    private static Node[] inner(Node[] children) {
+        if(children.length <= MAX_WIDTH) {
+            return new Node[] { Inner.of(children) };
+        }
+        int half = children.length / 2;
+        return new Node[] {
+                Inner.of(Arrays.copyOfRange(children, 0, half)),
+                Inner.of(Arrays.copyOfRange(children, half, children.length)) };
+    }
+
+    /**
+     * Combines two adjacent nodes of the same level into one node, or redistributes their contents evenly
+     * into two nodes if they do not fit into one.
+     */
+    private static Node[] combine(Node a, Node b) {
+        if(a instanceof Leaf) {
+            Value[] keys = concat(a.keys, b.keys);
+            Value[] values = concat(((Leaf) a).values, ((Leaf) b).values);
+            if(keys.length <= MAX_WIDTH) {
+                return new Node[] { new Leaf(keys, values) };
+            }
+            int half = keys.length / 2;
+            return new Node[] {
+                    new Leaf(Arrays.copyOfRange(keys, 0, half), Arrays.copyOfRange(values, 0, half)),
+                    new Leaf(Arrays.copyOfRange(keys, half, keys.length), Arrays.copyOfRange(values, half, values.length)) };
+        } else {
+            return inner(concat(((Inner) a).children, ((Inner) b).children));
+        }
+    }
+
+    private static <T> T[] concat(T[] a, T[] b) {
+        T[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static <T> T[] insert(T[] array, int index, T element) {
+        T[] result = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        result[index] = element;
+        return result;
+    }
+
+    private static <T> T[] remove(T[] array, int index) {
+        T[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    private static void footprint(ValueFootprint footprint, Node node) {
+        if(!footprint.visit(node)) {
+            return; // shared with other versions, already counted
+        }
+        footprint.count(Kind.COMPLEX, ValueFootprint.object(2, 16));
+        if(footprint.visit(node.keys)) {
+            footprint.count(Kind.COMPLEX, ValueFootprint.referenceArray(node.keys.length));
+        }
+        for(Value key : node.keys) {
+            footprint.value(key);
+        }
+        if(node instanceof Leaf) {
+            Value[] values = ((Leaf) node).values;
+            footprint.count(Kind.COMPLEX, ValueFootprint.referenceArray(values.length));
+            for(Value value : values) {
+                footprint.value(value);
+            }
+        } else {
+            Node[] children = ((Inner) node).children;
+            footprint.count(Kind.COMPLEX, ValueFootprint.referenceArray(children.length));
+            for(Node child : children) {
+                footprint(footprint, child);
+            }
+        }
+    }
+
+    /**
+     * A node of the tree, which is immutable.
+     */
+    private abstract static class Node {
+
+        /** the keys of a leaf, or the separators of an inner node */
+        final Value[] keys;
+
+        /** the number of entries of the subtree */
+        final int size;
+
+        /** the hash code of the entries of the subtree, lazily computed, zero if not yet computed */
+        private int hash;
+
+        /** the estimate of ValueFootprint.retainedSize() of the subtree, lazily computed, zero if not yet computed */
+        private volatile long retainedSize;
+
+        Node(Value[] keys, int size) {
+            this.keys = keys;
+            this.size = size;
+        }
+
+        /** the number of entries of a leaf or the number of children of an inner node */
+        abstract int width();
+
+        abstract Value firstKey();
+
+        abstract Value lastKey();
+
+        abstract Value maxNumericKey();
+
+        /**
+         * Returns the node with the key inserted or replaced: the node itself if unchanged, or one or two new nodes.
+         */
+        abstract Node[] put(Value key, Value value);
+
+        /**
+         * Returns the node with the key removed: the node itself if unchanged, or a new node, which can underflow.
+         */
+        abstract Node remove(Value key);
+
+        /**
+         * Returns the sum of the hash codes of the entries, which is memoized.
+         */
+        @Override
+        public int hashCode() {
+            int result = hash;
+            if(result == 0) {
+                result = hash = computeHash();
+            }
+            return result;
+        }
+
+        abstract int computeHash();
+
+        /**
+         * Returns the estimate of the heap memory retained by the subtree, which is memoized.
+         * <p>
+         * The separators of inner nodes are not counted, since they are keys of the leaves, too.
+         */
+        long retainedSize() {
+            long result = retainedSize;
+            if(result == 0) {
+                result = retainedSize = computeRetainedSize();
+            }
+            return result;
+        }
+
+        abstract long computeRetainedSize();
+    }
+
+    private static final class Leaf extends Node {
+
+        final Value[] values;
+
+        Leaf(Value[] keys, Value[] values) {
+            super(keys, keys.length);
+            this.values = values;
+        }
+
+        @Override
+        int width() {
+            return keys.length;
+        }
+
+        @Override
+        Value firstKey() {
+            return keys[0];
+        }
+
+        @Override
+        Value lastKey() {
+            return keys[keys.length - 1];
+        }
+
+        @Override
+        int computeHash() {
+            int result = 0;
+            for(int index = 0; index < keys.length; index++) {
+                result += keys[index].hashCode() ^ values[index].hashCode();
+            }
+            return result;
+        }
+
+        @Override
+        long computeRetainedSize() {
+            long result = ValueFootprint.object(2, 16) + ValueFootprint.referenceArray(keys.length)
+                    + ValueFootprint.referenceArray(values.length);
+            for(int index = 0; index < keys.length; index++) {
+                result += ValueFootprint.retainedSize(keys[index]) + ValueFootprint.retainedSize(values[index]);
+            }
+            return result;
+        }
+
+        @Override
+        Value maxNumericKey() {
+            for(int index = keys.length - 1; index >= 0; index--) {
+                if(keys[index].isNumeric()) {
+                    return keys[index]; // numbers are ordered before other kinds
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Node[] put(Value key, Value value) {
+            int index = Arrays.binarySearch(keys, key);
+            if(index >= 0) {
+                if(values[index] == value) {
+                    return new Node[] { this };
+                }
+                Value[] newValues = values.clone(); // replace, the keys can be shared
+                newValues[index] = value;
+                return new Node[] { new Leaf(keys, newValues) };
+            }
+            index = -(index + 1);
+            Value[] newKeys = insert(keys, index, key);
+            Value[] newValues = insert(values, index, value);
+            if(newKeys.length <= MAX_WIDTH) {
+                return new Node[] { new Leaf(newKeys, newValues) };
+            }
+            int half = newKeys.length / 2;
+            return new Node[] {
+                    new Leaf(Arrays.copyOfRange(newKeys, 0, half), Arrays.copyOfRange(newValues, 0, half)),
+                    new Leaf(Arrays.copyOfRange(newKeys, half, newKeys.length), Arrays.copyOfRange(newValues, half, newValues.length)) };
+        }
+
+        @Override
+        Node remove(Value key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? new Leaf(BTreeComplex.remove(keys, index), BTreeComplex.remove(values, index)) : this;
+        }
+    }
+
+    private static final class Inner extends Node {
+
+        final Node[] children;
+
+        private Inner(Value[] keys, Node[] children, int size) {
+            super(keys, size);
+            this.children = children;
+        }
+
+        static Inner of(Node[] children) {
+            Value[] keys = new Value[children.length - 1];
+            int size = children[0].size;
+            for(int index = 1; index < children.length; index++) {
+                keys[index - 1] = children[index].firstKey();
+                size += children[index].size;
+            }
+            return new Inner(keys, children, size);
+        }
+
+        /**
+         * Returns the index of the child which contains the given key, if it exists.
+         */
+        int childIndex(Value key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? index + 1 : -(index + 1);
+        }
+
+        @Override
+        int width() {
+            return children.length;
+        }
+
+        @Override
+        Value firstKey() {
+            return children[0].firstKey();
+        }
+
+        @Override
+        Value lastKey() {
+            return children[children.length - 1].lastKey();
+        }
+
+        @Override
+        int computeHash() {
+            int result = 0;
+            for(Node child : children) {
+                result += child.hashCode();
+            }
+            return result;
+        }
+
+        @Override
+        long computeRetainedSize() {
+            long result = ValueFootprint.object(2, 16) + ValueFootprint.referenceArray(keys.length)
+                    + ValueFootprint.referenceArray(children.length);
+            for(Node child : children) {
+                result += child.retainedSize();
+            }
+            return result;
+        }
+
+        @Override
+        Value maxNumericKey() {
+            for(int index = children.length - 1; index >= 0; index--) {
+                if(index == 0 || keys[index - 1].isNumeric()) { // otherwise, the child contains no numbers
+                    Value result = children[index].maxNumericKey();
+                    if(result != null) {
+                        return result;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Node[] put(Value key, Value value) {
+            int index = childIndex(key);
+            Node child = children[index];
+            Node[] newChildren = child.put(key, value);
+            if(newChildren.length == 1) {
+                if(newChildren[0] == child) {
+                    return new Node[] { this };
+                }
+                Node[] children = this.children.clone();
+                children[index] = newChildren[0];
+                return new Node[] { new Inner(keys, children, size - child.size + newChildren[0].size) };
+            }
+            Node[] children = insert(this.children, index + 1, newChildren[1]);
+            children[index] = newChildren[0];
+            Value[] keys = insert(this.keys, index, newChildren[1].firstKey());
+            if(children.length <= MAX_WIDTH) {
+                return new Node[] { new Inner(keys, children, size + 1) };
+            }
+            int half = children.length / 2;
+            return new Node[] {
+                    Inner.of(Arrays.copyOfRange(children, 0, half)),
+                    Inner.of(Arrays.copyOfRange(children, half, children.length)) };
+        }
+
+        @Override
+        Node remove(Value key) {
+            int index = childIndex(key);
+            Node child = children[index];
+            Node newChild = child.remove(key);
+            if(newChild == child) {
+                return this;
+            }
+            if(newChild.size == 0 && children.length > 1) { // possible for narrow nodes left by slicing
+                return new Inner(BTreeComplex.remove(keys, Math.max(index - 1, 0)), BTreeComplex.remove(children, index), size - 1);
+            }
+            if(newChild.width() >= MIN_WIDTH || children.length == 1) {
+                Node[] children = this.children.clone();
+                children[index] = newChild;
+                return new Inner(keys, children, size - 1);
+            }
+            // The child underflows: combine it with a sibling.
+            int left = index > 0 ? index - 1 : index;
+            Node[] combined = left == index ?
+                    combine(newChild, children[index + 1]) :
+                    combine(children[left], newChild);
+            Node[] children = this.children.clone();
+            Value[] keys = this.keys;
+            children[left] = combined[0];
+            if(combined.length == 2) {
+                children[left + 1] = combined[1];
+                keys = keys.clone();
+                keys[left] = combined[1].firstKey();
+            } else {
+                children = BTreeComplex.remove(children, left + 1);
+                keys = BTreeComplex.remove(keys, left);
+            }
+            return new Inner(keys, children, size - 1);
+        }
+    }
+
+    /**
+     * An iterator over the leaves, which keeps the path from the root to the current leaf.
+     */
+    private class NodeIterator implements Iterator<Pair> {
+
+        private final Inner[] path;
+        private final int[] positions;
+        private Leaf leaf;
+        private int position;
+        private int remaining;
+
+        private NodeIterator(int fromIndex) {
+            path = new Inner[height - 1];
+            positions = new int[height - 1];
+            remaining = root.size - fromIndex;
+            Node node = root;
+            for(int level = 0; level < path.length; level++) {
+                Inner inner = (Inner) node;
+                int child = 0;
+                while(child < inner.children.length - 1 && fromIndex >= inner.children[child].size) {
+                    fromIndex -= inner.children[child++].size;
+                }
+                path[level] = inner;
+                positions[level] = child;
+                node = inner.children[child];
+            }
+            leaf = (Leaf) node;
+            position = fromIndex;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Pair next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if(position == leaf.keys.length) {
+                advance();
+            }
+            remaining--;
+            Pair pair = Values.pair(leaf.keys[position], leaf.values[position]);
+            position++;
+            return pair;
+        }
+
+        /**
+         * Moves to the first entry of the next leaf.
+         */
+        private void advance() {
+            int level = path.length - 1;
+            while(positions[level] == path[level].children.length - 1) {
+                level--; // there is a next leaf, so there is always a level with a next child
+            }
+            positions[level]++;
+            Node node = path[level].children[positions[level]];
+            for(level++; level < path.length; level++) {
+                path[level] = (Inner) node;
+                positions[level] = 0;
+                node = path[level].children[0];
+            }
+            leaf = (Leaf) node;
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package styx.data.impl.value;
+
+import java.math.BigDecimal;
+
+/**
+ * An implementation of a numeric value that cannot be represented by any of the other implementations.
+ * <p>
+ * The value never has trailing zeros, so that equal numbers have equal hash codes.
+ */
+class BigDecimalNumeric extends AbstractNumeric {
+
+    private final BigDecimal value;
+
+    BigDecimalNumeric(BigDecimal value) {
+        this.value = value;
+    }
+
+    @Override
+    public BigDecimal toBigDecimal() {
+        return value;
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(1, 0) + ValueFootprint.object(2, 16));
+        if(value.precision() > 18) {
+            // the unscaled value does not fit into a long, so it is held as a BigInteger
+            int words = (int) (value.precision() * 0.104) + 1; // log2(10) / 32 bits per decimal digit
+            footprint.count(kind(), ValueFootprint.object(1, 20) + ValueFootprint.array(words, 4));
+        }
+    }
+
+    @Override
+    public String toDecimalString() {
+        if(value.scale() < 0 && -value.scale() <= value.precision()) {
+            return value.toPlainString(); // prefer plain integers unless mostly trailing zeros
+        }
+        String string = value.toString();
+        return string.indexOf('+') >= 0 ? string.replace("E+", "E") : string; // the syntax has no positive exponent sign
+    }
+}
@@ -1,14 +1,24 @@
 package styx.data.impl.value;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
 
 import styx.data.Complex;
-import styx.data.Kind;
 import styx.data.Pair;
+import styx.data.Reference;
 import styx.data.Value;
+import styx.data.Values;
 
 /**
  * An implementation of a complex value as an immutable, balanced binary tree.
@@ -17,6 +27,14 @@ import styx.data.Value;
  * empty node (which is exposed by the public static field EMPTY) and using the put() and putAll()
  * or add() and addAll() methods to insert entries.
  * <p>
+ * When putAll() or addAll() is called on the empty tree, the tree is built bottom up in a single pass,
+ * which takes O(n) time and allocates exactly n nodes if the entries are sorted by key (as for lists,
+ * sorted maps and most parsed values), or O(n log n) time for sorting them first otherwise.
+ * If the keys turn out to be the dense integers 1..n, a VectorTrieComplex is returned instead, which is
+ * also the case when putting the key 1 into the empty tree. Likewise, a SortedArrayComplex is returned
+ * for only a few entries, or when putting any other key into the empty tree, and a BTreeComplex for
+ * many entries.
+ * <p>
  * Note that instances of this class can be regarded as a whole tree (i.e. as a complex value)
  * or as a node of the tree (i.e. as a key/value-pair) at the same time.
  * <p>
@@ -30,7 +48,7 @@ import styx.data.Value;
  * consistent with this restriction: The empty node is never retured when iterating or streaming
  * over a complex value's entries.
  */
-public class BinaryTreeComplex extends AbstractValue implements Complex, Pair {
+public class BinaryTreeComplex extends AbstractComplex implements Pair {
 
     /** the starting point for working with complex values */
     public static final Complex EMPTY = new BinaryTreeComplex();
@@ -50,12 +68,22 @@ public class BinaryTreeComplex extends AbstractValue implements Complex, Pair {
     /** the height of the tree: 0 if empty, 1 if containing one key/value-pair, ... */
     private final int height;
 
+    /** the number of key/value-pairs in the tree (order statistic) */
+    private final int size;
+
+    /** the hash code of the tree, lazily computed, zero if not yet computed */
+    private int hash;
+
+    /** the estimate of ValueFootprint.retainedSize(), lazily computed, zero if not yet computed */
+    private volatile long retainedSize;
+
     private BinaryTreeComplex() {
         this.key = null;
         this.value = null;
         this.left = this;
         this.right = this;
         this.height = 0;
+        this.size = 0;
     }
 
     private BinaryTreeComplex(Value key, Value value, BinaryTreeComplex left, BinaryTreeComplex right) {
@@ -64,6 +92,32 @@ public class BinaryTreeComplex extends AbstractValue implements Complex, Pair {
         this.left = Objects.requireNonNull(left);
         this.right = Objects.requireNonNull(right);
         this.height = 1 + Math.max(left.height, right.height);
+        this.size = 1 + left.size + right.size;
+    }
+
+    /**
+     * Returns a builder that starts with an empty value.
+     *
+     * @return a new builder, never null.
+     */
+    public static Builder builder() {
+        return new Builder((BinaryTreeComplex) EMPTY);
+    }
+
+    /**
+     * Returns a builder that starts with the given value.
+     *
+     * @param initial the initial value, must not be null.
+     * @return a new builder, never null.
+     */
+    public static Builder builder(Complex initial) {
+        initial = LazyComplex.unwrap(initial);
+        if(initial instanceof BinaryTreeComplex) {
+            return new Builder((BinaryTreeComplex) initial);
+        } else {
+            Pair[] pairs = initial.allEntries().toArray(new Pair[0]);
+            return new Builder(build(pairs, pairs.length, true));
+        }
     }
 
     @Override
@@ -84,23 +138,97 @@ public class BinaryTreeComplex extends AbstractValue implements Complex, Pair {
         return right.height - left.height;
     }
 
+    /**
+     * Returns the hash code of the tree.
+     * <p>
+     * The hash code is the sum of the hash codes of all key/value-pairs (as defined by java.util.Map.Entry),
+     * which does not depend on the shape of the tree. It is memoized in every node, so that subtrees which are
+     * shared between trees are hashed only once.
+     */
     @Override
-    public int compareTo(Value other) {
-        if(other.isComplex()) {
-            return compare(this, other.asComplex());
-        } else {
-            return compare(kind(), other.kind());
+    public int hashCode() {
+        int result = hash;
+        if(result == 0 && !isEmpty()) {
+            result = hash = left.hashCode() + (key.hashCode() ^ value.hashCode()) + right.hashCode();
+        }
+        return result;
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        if(!isEmpty()) {
+            footprint.count(kind(), ValueFootprint.object(4, 20));
+            footprint.value(key);
+            footprint.value(value);
+            footprint.value(left);
+            footprint.value(right);
         }
     }
 
+    /**
+     * Returns the estimate of ValueFootprint.retainedSize(), which is memoized in every node like the hash code.
+     */
     @Override
-    public Kind kind() {
-        return Kind.COMPLEX;
+    long retainedSize() {
+        long result = retainedSize;
+        if(result == 0) {
+            result = retainedSize = super.retainedSize();
+        }
+        return result;
     }
 
     @Override
     public Iterator<Pair> iterator() {
-        return new TreeIterator(this);
+        return new TreeIterator(this, false);
+    }
+
+    @Override
+    protected Iterator<Pair> iterator(int fromIndex) {
+        return new TreeIterator(this, fromIndex);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Pair entryAt(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        BinaryTreeComplex node = this;
+        while(true) {
+            if(index < node.left.size) {
+                node = node.left;
+            } else if(index > node.left.size) {
+                index -= node.left.size + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    @Override
+    public int rankOf(Value key) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        int rank = 0;
+        BinaryTreeComplex node = this;
+        while(!node.isEmpty()) {
+            int order = key.compareTo(node.key);
+            if(order == 0) {
+                return rank + node.left.size;
+            } else if(order < 0) {
+                node = node.left;
+            } else /* order > 0 */ {
+                rank += node.left.size + 1;
+                node = node.right;
+            }
+        }
+        return rank;
     }
 
     @Override
@@ -116,16 +244,201 @@ public class BinaryTreeComplex extends AbstractValue implements Complex, Pair {
         if(key == null) {
             throw new IllegalArgumentException("The key must not be null.");
         }
+        if(isEmpty() && value != null) {
+            if(VectorTrieComplex.isFirstIndex(key)) {
+                return VectorTrieComplex.valueOf(new Value[] { value }, 1);
+            } else {
+                return SortedArrayComplex.valueOf(new Value[] { key }, new Value[] { value });
+            }
+        }
         return put(this, key, value);
     }
 
     @Override
-    public long nextIndex() {
-        if(isEmpty()) {
-            return 1;
+    public Complex putAll(Collection<Pair> pairs) {
+        if(isEmpty() && pairs != null) {
+            return valueOf(pairs.toArray(new Pair[pairs.size()]), pairs.size(), false);
+        } else if(pairs != null) {
+            Builder builder = new Builder(this);
+            for(Pair pair : pairs) {
+                builder.put(pair.key(), pair.value());
+            }
+            return builder.build();
         } else {
-            throw new UnsupportedOperationException();
+            return this;
+        }
+    }
+
+    @Override
+    public Complex putAll(Map<? extends Value, ? extends Value> values) {
+        if(isEmpty() && values != null) {
+            List<Pair> pairs = new ArrayList<>(values.size());
+            for(Map.Entry<? extends Value, ? extends Value> entry : values.entrySet()) {
+                if(entry.getValue() != null) {
+                    pairs.add(Values.pair(entry.getKey(), entry.getValue()));
+                }
+            }
+            boolean sorted = values instanceof SortedMap && ((SortedMap<?, ?>) values).comparator() == null;
+            return valueOf(pairs.toArray(new Pair[pairs.size()]), pairs.size(), sorted);
+        } else {
+            return super.putAll(values);
+        }
+    }
+
+    @Override
+    public Complex addAll(Collection<? extends Value> values) {
+        if(isEmpty() && values != null) {
+            Value[] array = values.toArray(new Value[values.size()]);
+            if(array.length > 0 && !Arrays.asList(array).contains(null)) {
+                return VectorTrieComplex.valueOf(array, array.length); // keys 1..n are dense
+            }
+            Pair[] pairs = new Pair[values.size()];
+            int count = 0;
+            long nextIndex = nextIndex();
+            for(Value value : values) {
+                Value key = Values.number(nextIndex++);
+                if(value != null) {
+                    pairs[count++] = Values.pair(key, value);
+                }
+            }
+            return build(pairs, count, true);
+        } else if(values != null && !values.isEmpty()) {
+            Builder builder = new Builder(this);
+            long nextIndex = nextIndex();
+            for(Value value : values) {
+                builder.put(Values.number(nextIndex++), value);
+            }
+            return builder.build();
+        } else {
+            return this;
+        }
+    }
+
+    /**
+     * Returns the key to be used by add() and addAll().
+     * <p>
+     * Since numbers are ordered before all other kinds of keys, the greatest numeric key is found in O(log n).
+     */
+    @Override
+    public long nextIndex() {
+        Value max = null;
+        BinaryTreeComplex node = this;
+        while(!node.isEmpty()) {
+            if(node.key.isNumeric()) {
+                max = node.key;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return max == null ? 1 : AbstractNumeric.nextIndex(max.asNumeric());
+    }
+
+    @Override
+    public Optional<Pair> first() {
+        return isEmpty() ? Optional.empty() : Optional.of(first(this));
+    }
+
+    @Override
+    public Optional<Pair> last() {
+        return isEmpty() ? Optional.empty() : Optional.of(last(this));
+    }
+
+    @Override
+    public Optional<Pair> floor(Value key) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        BinaryTreeComplex result = null;
+        BinaryTreeComplex node = this;
+        while(!node.isEmpty()) {
+            int order = key.compareTo(node.key);
+            if(order == 0) {
+                return Optional.of(node);
+            } else if(order < 0) {
+                node = node.left;
+            } else /* order > 0 */ {
+                result = node;
+                node = node.right;
+            }
+        }
+        return Optional.ofNullable(result);
+    }
+
+    @Override
+    public Optional<Pair> ceiling(Value key) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        BinaryTreeComplex result = null;
+        BinaryTreeComplex node = this;
+        while(!node.isEmpty()) {
+            int order = key.compareTo(node.key);
+            if(order == 0) {
+                return Optional.of(node);
+            } else if(order < 0) {
+                result = node;
+                node = node.left;
+            } else /* order > 0 */ {
+                node = node.right;
+            }
+        }
+        return Optional.ofNullable(result);
+    }
+
+    @Override
+    public Complex headMap(Value toKey) {
+        if(toKey == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        return head(this, toKey);
+    }
+
+    @Override
+    public Complex tailMap(Value fromKey) {
+        if(fromKey == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        return tail(this, fromKey);
+    }
+
+    @Override
+    public Iterator<Pair> descendingIterator() {
+        return new TreeIterator(this, true);
+    }
+
+    @Override
+    public Complex merge(Complex other, BinaryOperator<Value> conflict) {
+        Objects.requireNonNull(conflict);
+        return union(this, toTree(other), conflict);
+    }
+
+    @Override
+    public Complex intersect(Complex other) {
+        return intersect(this, toTree(other));
+    }
+
+    @Override
+    public Complex difference(Complex other) {
+        return difference(this, toTree(other));
+    }
+
+    @Override
+    public Complex[] split(Value key) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
         }
+        Split split = split(this, key);
+        return new Complex[] { split.left, split.value == null ? split.right : join(empty(), key, split.value, split.right) };
+    }
+
+    @Override
+    public Complex concat(Complex other) {
+        BinaryTreeComplex right = toTree(other);
+        if(!isEmpty() && !right.isEmpty() && last(this).key.compareTo(first(right).key) >= 0) {
+            throw new IllegalArgumentException("The keys of the values overlap.");
+        }
+        return join(this, right);
     }
 
     private static Optional<Value> get(BinaryTreeComplex node, Value key) {
@@ -169,6 +482,115 @@ public class BinaryTreeComplex extends AbstractValue implements Complex, Pair {
         }
     }
 
+    /**
+     * Builds a complex value from the given pairs, which is a VectorTrieComplex if the keys are dense,
+     * a SortedArrayComplex if there are only a few pairs, or a BTreeComplex if there are many.
+     *
+     * @param pairs the pairs, the array is modified if the pairs are not sorted.
+     * @param count the number of pairs to use.
+     * @param sorted true if the caller guarantees the keys to be strictly ascending, false to check them.
+     * @return the complex value, never null.
+     */
+    private static Complex valueOf(Pair[] pairs, int count, boolean sorted) {
+        count = sort(pairs, count, sorted);
+        if(isDense(pairs, count)) {
+            Value[] values = new Value[count];
+            for(int index = 0; index < count; index++) {
+                values[index] = pairs[index].value();
+            }
+            return VectorTrieComplex.valueOf(values, count);
+        } else if(count > 0 && count <= SortedArrayComplex.MAX_SIZE) {
+            Value[] keys = new Value[count];
+            Value[] values = new Value[count];
+            for(int index = 0; index < count; index++) {
+                keys[index] = pairs[index].key();
+                values[index] = pairs[index].value();
+            }
+            return SortedArrayComplex.valueOf(keys, values);
+        } else if(count >= BTreeComplex.MIN_SIZE) {
+            return BTreeComplex.valueOf(pairs, count);
+        }
+        return build(pairs, 0, count);
+    }
+
+    /**
+     * Builds a tree from the given pairs.
+     *
+     * @param pairs the pairs, the array is modified if the pairs are not sorted.
+     * @param count the number of pairs to use.
+     * @param sorted true if the caller guarantees the keys to be strictly ascending, false to check them.
+     * @return the tree, never null.
+     */
+    private static BinaryTreeComplex build(Pair[] pairs, int count, boolean sorted) {
+        return build(pairs, 0, sort(pairs, count, sorted));
+    }
+
+    /**
+     * Sorts the given pairs by key, keeping the last one of equal keys, and drops the pairs without a value
+     * (which a custom Pair implementation may return), as put() treats them as removals.
+     *
+     * @return the number of remaining pairs.
+     */
+    private static int sort(Pair[] pairs, int count, boolean sorted) {
+        for(int index = 0; index < count; index++) {
+            if(pairs[index].key() == null) {
+                throw new IllegalArgumentException("The key must not be null.");
+            }
+        }
+        if(!sorted && !isSorted(pairs, count)) {
+            // Sort stable and keep the last one of equal keys, which is what a sequence of put() would do.
+            Arrays.sort(pairs, 0, count, Comparator.comparing(Pair::key));
+            int unique = 0;
+            for(int index = 0; index < count; index++) {
+                if(unique > 0 && pairs[unique - 1].key().compareTo(pairs[index].key()) == 0) {
+                    pairs[unique - 1] = pairs[index];
+                } else {
+                    pairs[unique++] = pairs[index];
+                }
+            }
+            count = unique;
+        }
+        int remaining = 0;
+        for(int index = 0; index < count; index++) {
+            if(pairs[index].value() != null) {
+                pairs[remaining++] = pairs[index];
+            }
+        }
+        return remaining;
+    }
+
+    private static BinaryTreeComplex build(Pair[] pairs, int fromIndex, int toIndex) {
+        if(fromIndex == toIndex) {
+            return (BinaryTreeComplex) EMPTY;
+        }
+        int midIndex = (fromIndex + toIndex) >>> 1;
+        return new BinaryTreeComplex(pairs[midIndex].key(), pairs[midIndex].value(),
+                build(pairs, fromIndex, midIndex),
+                build(pairs, midIndex + 1, toIndex));
+    }
+
+    private static boolean isDense(Pair[] pairs, int count) {
+        if(count == 0) {
+            return false;
+        }
+        for(int index = 0; index < count; index++) {
+            Value key = pairs[index].key();
+            if(!key.isNumeric() || !key.asNumeric().isInteger() || key.asNumeric().toInteger() != index + 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSorted(Pair[] pairs, int count) {
+        for(int index = 1; index < count; index++) {
+            if(pairs[index - 1].key().compareTo(pairs[index].key()) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static BinaryTreeComplex merge(BinaryTreeComplex left, BinaryTreeComplex right) {
         if(left.isEmpty() && right.isEmpty()) {
             return left /* empty */; // trivial: nothing to merge
@@ -189,6 +611,204 @@ public class BinaryTreeComplex extends AbstractValue implements Complex, Pair {
         }
     }
 
+    /*
+     * The bulk operations below are based on join(), which combines two trees and a key/value-pair in between
+     * in time proportional to the difference of their heights, and split(), which is its inverse. Recursing
+     * over the smaller tree, union, intersection and difference take O(m log(n/m + 1)) time, and subtrees
+     * which are not affected are shared with the original trees.
+     */
+
+    private static BinaryTreeComplex empty() {
+        return (BinaryTreeComplex) EMPTY;
+    }
+
+    private static BinaryTreeComplex toTree(Complex value) {
+        value = LazyComplex.unwrap(value);
+        if(value instanceof BinaryTreeComplex) {
+            return (BinaryTreeComplex) value;
+        } else {
+            Pair[] pairs = value.allEntries().toArray(new Pair[0]);
+            return build(pairs, pairs.length, true);
+        }
+    }
+
+    private static BinaryTreeComplex first(BinaryTreeComplex node) {
+        while(!node.left.isEmpty()) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private static BinaryTreeComplex last(BinaryTreeComplex node) {
+        while(!node.right.isEmpty()) {
+            node = node.right;
+        }
+        return node;
+    }
+
+    /**
+     * Joins two trees and a key/value-pair, where all keys of left are less than key and all keys of right are greater.
+     */
+    private static BinaryTreeComplex join(BinaryTreeComplex left, Value key, Value value, BinaryTreeComplex right) {
+        if(left.height > right.height + 1) {
+            return joinRight(left, key, value, right);
+        } else if(right.height > left.height + 1) {
+            return joinLeft(left, key, value, right);
+        } else {
+            return new BinaryTreeComplex(key, value, left, right);
+        }
+    }
+
+    private static BinaryTreeComplex joinRight(BinaryTreeComplex left, Value key, Value value, BinaryTreeComplex right) {
+        BinaryTreeComplex newRight;
+        if(left.right.height <= right.height + 1) {
+            newRight = new BinaryTreeComplex(key, value, left.right, right);
+        } else {
+            newRight = joinRight(left.right, key, value, right);
+        }
+        return balance(new BinaryTreeComplex(left.key, left.value, left.left, newRight));
+    }
+
+    private static BinaryTreeComplex joinLeft(BinaryTreeComplex left, Value key, Value value, BinaryTreeComplex right) {
+        BinaryTreeComplex newLeft;
+        if(right.left.height <= left.height + 1) {
+            newLeft = new BinaryTreeComplex(key, value, left, right.left);
+        } else {
+            newLeft = joinLeft(left, key, value, right.left);
+        }
+        return balance(new BinaryTreeComplex(right.key, right.value, newLeft, right.right));
+    }
+
+    /**
+     * Joins two trees, where all keys of left are less than the keys of right.
+     */
+    private static BinaryTreeComplex join(BinaryTreeComplex left, BinaryTreeComplex right) {
+        if(left.isEmpty()) {
+            return right;
+        } else if(right.isEmpty()) {
+            return left;
+        } else {
+            BinaryTreeComplex last = last(left);
+            return join(put(left, last.key, null), last.key, last.value, right);
+        }
+    }
+
+    /**
+     * Joins the given subtrees with the key/value-pair of the given node, or returns the node itself if nothing has changed.
+     */
+    private static BinaryTreeComplex rejoin(BinaryTreeComplex node, BinaryTreeComplex left, Value value, BinaryTreeComplex right) {
+        if(value == null) {
+            return join(left, right);
+        } else if(left == node.left && value == node.value && right == node.right) {
+            return node; // share the unaffected subtree
+        } else {
+            return join(left, node.key, value, right);
+        }
+    }
+
+    private static Split split(BinaryTreeComplex node, Value key) {
+        if(node.isEmpty()) {
+            return new Split(node, null, node);
+        }
+        int order = key.compareTo(node.key);
+        if(order == 0) {
+            return new Split(node.left, node.value, node.right);
+        } else if(order < 0) {
+            Split split = split(node.left, key);
+            return new Split(split.left, split.value, join(split.right, node.key, node.value, node.right));
+        } else /* order > 0 */ {
+            Split split = split(node.right, key);
+            return new Split(join(node.left, node.key, node.value, split.left), split.value, split.right);
+        }
+    }
+
+    /**
+     * Returns the tree with the keys less than the given one, which is the left part of split().
+     */
+    private static BinaryTreeComplex head(BinaryTreeComplex node, Value key) {
+        if(node.isEmpty()) {
+            return node;
+        }
+        int order = key.compareTo(node.key);
+        if(order == 0) {
+            return node.left;
+        } else if(order < 0) {
+            return head(node.left, key);
+        } else /* order > 0 */ {
+            BinaryTreeComplex right = head(node.right, key);
+            return right == node.right ? node : join(node.left, node.key, node.value, right);
+        }
+    }
+
+    /**
+     * Returns the tree with the keys greater than or equal to the given one.
+     */
+    private static BinaryTreeComplex tail(BinaryTreeComplex node, Value key) {
+        if(node.isEmpty()) {
+            return node;
+        }
+        int order = key.compareTo(node.key);
+        if(order == 0) {
+            return node.left.isEmpty() ? node : join(empty(), node.key, node.value, node.right);
+        } else if(order < 0) {
+            BinaryTreeComplex left = tail(node.left, key);
+            return left == node.left ? node : join(left, node.key, node.value, node.right);
+        } else /* order > 0 */ {
+            return tail(node.right, key);
+        }
+    }
+
+    /**
+     * Compares two trees for ComplexDiff, skipping shared subtrees.
+     * <p>
+     * Splitting the new tree at the key of the old root returns the subtrees of the new root unchanged if both
+     * roots have the same key, which is the case for trees that have been derived from each other.
+     */
+    static void diff(ComplexDiff diff, Reference path, BinaryTreeComplex oldTree, BinaryTreeComplex newTree) {
+        if(oldTree == newTree) {
+            return;
+        } else if(oldTree.isEmpty() || newTree.isEmpty()) {
+            diff.diff(path, oldTree.iterator(), newTree.iterator());
+        } else {
+            Split split = split(newTree, oldTree.key);
+            diff(diff, path, oldTree.left, split.left);
+            diff.entry(path, oldTree.key, oldTree.value, split.value);
+            diff(diff, path, oldTree.right, split.right);
+        }
+    }
+
+    private static BinaryTreeComplex union(BinaryTreeComplex a, BinaryTreeComplex b, BinaryOperator<Value> conflict) {
+        if(a.isEmpty()) {
+            return b;
+        } else if(b.isEmpty()) {
+            return a;
+        }
+        Split split = split(b, a.key);
+        BinaryTreeComplex left = union(a.left, split.left, conflict);
+        BinaryTreeComplex right = union(a.right, split.right, conflict);
+        return rejoin(a, left, split.value == null ? a.value : conflict.apply(a.value, split.value), right);
+    }
+
+    private static BinaryTreeComplex intersect(BinaryTreeComplex a, BinaryTreeComplex b) {
+        if(a.isEmpty() || b.isEmpty()) {
+            return empty();
+        }
+        Split split = split(b, a.key);
+        BinaryTreeComplex left = intersect(a.left, split.left);
+        BinaryTreeComplex right = intersect(a.right, split.right);
+        return rejoin(a, left, split.value == null ? null : a.value, right);
+    }
+
+    private static BinaryTreeComplex difference(BinaryTreeComplex a, BinaryTreeComplex b) {
+        if(a.isEmpty() || b.isEmpty()) {
+            return a;
+        }
+        Split split = split(b, a.key);
+        BinaryTreeComplex left = difference(a.left, split.left);
+        BinaryTreeComplex right = difference(a.right, split.right);
+        return rejoin(a, left, split.value == null ? a.value : null, right);
+    }
+
     private static BinaryTreeComplex balance(BinaryTreeComplex node) {
         if(node.balance() > 1) {
             if(node.right.balance() <= -1) {
@@ -211,44 +831,73 @@ public class BinaryTreeComplex extends AbstractValue implements Complex, Pair {
     }
 
     private static BinaryTreeComplex rotateLeft(BinaryTreeComplex node) {
-        return new BinaryTreeComplex(node.right.key, node.right.value,
-                new BinaryTreeComplex(node.key, node.value, node.left, node.right.left),
-                node.right.right);
+        BinaryTreeComplex right = node.right;
+        return new BinaryTreeComplex(right.key, right.value,
+                new BinaryTreeComplex(node.key, node.value, node.left, right.left),
+                right.right);
     }
 
     private static BinaryTreeComplex rotateRight(BinaryTreeComplex node) {
-        return new BinaryTreeComplex(node.left.key, node.left.value,
-                node.left.left,
-                new BinaryTreeComplex(node.key, node.value, node.left.right, node.right));
-    }
-
-    private static int compare(Complex a, Complex b) {
-        Iterator<Pair> iteratorA = a.iterator();
-        Iterator<Pair> iteratorB = b.iterator();
-        while(iteratorA.hasNext() && iteratorB.hasNext()) {
-            Pair pairA = iteratorA.next();
-            Pair pairB = iteratorB.next();
-            int keyOrder = pairA.key().compareTo(pairB.key());
-            if(keyOrder != 0) {
-                return keyOrder;
-            }
-            int valueOrder = pairA.value().compareTo(pairB.value());
-            if(valueOrder != 0) {
-                return valueOrder;
-            }
+        BinaryTreeComplex left = node.left;
+        return new BinaryTreeComplex(left.key, left.value,
+                left.left,
+                new BinaryTreeComplex(node.key, node.value, left.right, node.right));
+    }
+
+    /**
+     * The result of splitting a tree at a key.
+     */
+    private static class Split {
+
+        /** the tree with the keys less than the key */
+        private final BinaryTreeComplex left;
+
+        /** the value of the key, null if not contained */
+        private final Value value;
+
+        /** the tree with the keys greater than the key */
+        private final BinaryTreeComplex right;
+
+        private Split(BinaryTreeComplex left, Value value, BinaryTreeComplex right) {
+            this.left = left;
+            this.value = value;
+            this.right = right;
         }
-        return Boolean.compare(iteratorA.hasNext(), iteratorB.hasNext());
     }
 
     private static class TreeIterator implements Iterator<Pair> {
 
         private final BinaryTreeComplex[] path;
+        private final boolean descending;
         private int pos;
 
-        private TreeIterator(BinaryTreeComplex tree) {
-            path = new BinaryTreeComplex[tree.height];
-            pos = -1;
-            walkLeft(tree);
+        private TreeIterator(BinaryTreeComplex tree, boolean descending) {
+            this.path = new BinaryTreeComplex[tree.height];
+            this.descending = descending;
+            this.pos = -1;
+            walk(tree);
+        }
+
+        /**
+         * Constructs an ascending iterator that starts at the given position, seeking it in O(log n).
+         */
+        private TreeIterator(BinaryTreeComplex tree, int fromIndex) {
+            this.path = new BinaryTreeComplex[tree.height];
+            this.descending = false;
+            this.pos = -1;
+            BinaryTreeComplex node = tree;
+            while(!node.isEmpty()) {
+                if(fromIndex <= node.left.size) {
+                    path[++pos] = node; // node is at or after the position, visit it after its left subtree
+                    if(fromIndex == node.left.size) {
+                        break;
+                    }
+                    node = node.left;
+                } else {
+                    fromIndex -= node.left.size + 1;
+                    node = node.right;
+                }
+            }
         }
 
         @Override
@@ -261,21 +910,92 @@ public class BinaryTreeComplex extends AbstractValue implements Complex, Pair {
             if(!hasNext()) {
                 throw new NoSuchElementException();
             }
-            BinaryTreeComplex node = path[pos];
-            if(!node.right.isEmpty()) {
-                pos--;
-                walkLeft(node.right);
-            } else {
-                pos--;
-            }
+            BinaryTreeComplex node = path[pos--];
+            walk(descending ? node.left : node.right);
             return node;
         }
 
-        private void walkLeft(BinaryTreeComplex node) {
+        /**
+         * Pushes the given node and its left (or right, if descending) descendants onto the path.
+         */
+        private void walk(BinaryTreeComplex node) {
             while(!node.isEmpty()) {
                 path[++pos] = node;
-                node = node.left;
+                node = descending ? node.right : node.left;
+            }
+        }
+    }
+
+    /**
+     * Applies the given changes, sorted by key, to the given tree, where a null value removes the entry.
+     * <p>
+     * Like union(), this recurses over the changes split at the keys of the tree in O(m log(n/m + 1)) time,
+     * and shares the subtrees which are not affected.
+     */
+    private static BinaryTreeComplex apply(BinaryTreeComplex node, Value[] keys, Value[] values, int fromIndex, int toIndex) {
+        if(fromIndex == toIndex) {
+            return node;
+        } else if(node.isEmpty()) {
+            int midIndex = (fromIndex + toIndex) >>> 1;
+            BinaryTreeComplex left = apply(node, keys, values, fromIndex, midIndex);
+            BinaryTreeComplex right = apply(node, keys, values, midIndex + 1, toIndex);
+            return values[midIndex] == null ? join(left, right) : join(left, keys[midIndex], values[midIndex], right);
+        }
+        int index = Arrays.binarySearch(keys, fromIndex, toIndex, node.key);
+        int midIndex = index >= 0 ? index : -index - 1;
+        BinaryTreeComplex left = apply(node.left, keys, values, fromIndex, midIndex);
+        BinaryTreeComplex right = apply(node.right, keys, values, index >= 0 ? index + 1 : midIndex, toIndex);
+        return rejoin(node, left, index >= 0 ? values[index] : node.value, right);
+    }
+
+    /**
+     * A builder for trees, which buffers changes and applies them in a single pass.
+     * <p>
+     * The changes made by put() are collected in a sorted change buffer owned by the builder. Calling build()
+     * applies all m buffered changes to the immutable tree of n entries in one O(m log(n/m + 1)) pass, so that
+     * every affected node is copied only once instead of once per change, and the subtrees which are not affected
+     * are shared.
+     * The nodes of the returned value are never modified. The builder can be used further.
+     * <p>
+     * Instances are not thread-safe and must not be shared.
+     */
+    public static class Builder {
+
+        private final SortedMap<Value, Value> changes = new TreeMap<>();
+        private BinaryTreeComplex root;
+
+        private Builder(BinaryTreeComplex root) {
+            this.root = root;
+        }
+
+        /**
+         * Inserts, replaces or removes an entry.
+         *
+         * @param key the key, must not be null.
+         * @param value the value, null to remove the entry.
+         * @return this builder.
+         */
+        public Builder put(Value key, Value value) {
+            if(key == null) {
+                throw new IllegalArgumentException("The key must not be null.");
+            }
+            changes.put(key, value);
+            return this;
+        }
+
+        /**
+         * Returns the current value, applying the changes made since the last call.
+         *
+         * @return the immutable value, never null.
+         */
+        public Complex build() {
+            if(!changes.isEmpty()) {
+                Value[] keys = changes.keySet().toArray(new Value[changes.size()]);
+                Value[] values = changes.values().toArray(new Value[changes.size()]);
+                root = apply(root, keys, values, 0, keys.length);
+                changes.clear();
             }
+            return root;
         }
     }
 }
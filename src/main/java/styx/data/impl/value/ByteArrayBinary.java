@@ -1,5 +1,6 @@
 package styx.data.impl.value;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -11,6 +12,9 @@ public class ByteArrayBinary extends AbstractValue implements Binary {
 
     private final byte[] value;
 
+    /** the hash code, lazily computed, zero if not yet computed */
+    private int hash;
+
     private static final Binary EMPTY = new ByteArrayBinary(new byte[0]);
 
     private ByteArrayBinary(byte[] value) {
@@ -25,6 +29,17 @@ public class ByteArrayBinary extends AbstractValue implements Binary {
         }
     }
 
+    /**
+     * Constructs a binary value from a copy of the given range of bytes.
+     */
+    public static Binary valueOf(byte[] value, int offset, int length) {
+        if(length == 0) {
+            return EMPTY;
+        } else {
+            return new ByteArrayBinary(Arrays.copyOfRange(value, offset, offset + length));
+        }
+    }
+
     @Override
     public int compareTo(Value other) {
         if(other.isBinary()) {
@@ -34,6 +49,23 @@ public class ByteArrayBinary extends AbstractValue implements Binary {
         }
     }
 
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if(result == 0) {
+            result = hash = Arrays.hashCode(value);
+        }
+        return result;
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(1, 4));
+        if(footprint.visit(value)) {
+            footprint.count(kind(), ValueFootprint.array(value.length, 1));
+        }
+    }
+
     @Override
     public Kind kind() {
         return Kind.BINARY;
@@ -54,15 +86,34 @@ public class ByteArrayBinary extends AbstractValue implements Binary {
         return Arrays.copyOf(value, value.length);
     }
 
+    @Override
+    public Binary slice(int fromIndex, int toIndex) {
+        if(fromIndex < 0 || fromIndex > toIndex || toIndex > value.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if(fromIndex == 0 && toIndex == value.length) {
+            return this;
+        }
+        return ByteBufferBinary.wrap(ByteBuffer.wrap(value, fromIndex, toIndex - fromIndex)); // shares the array
+    }
+
+    @Override
+    public ByteBuffer asReadOnlyBuffer() {
+        return ByteBuffer.wrap(value).asReadOnlyBuffer();
+    }
+
     private static int compare(Binary a, Binary b) {
-        int commonByteCount = Math.min(a.byteCount(), b.byteCount());
-        for(int index = 0; index < commonByteCount; index++) {
-            byte byteA = a.byteAt(index);
-            byte byteB = b.byteAt(index);
-            if(byteA != byteB) {
-                return Integer.compare(byteA & 0xFF, byteB & 0xFF);
-            }
+        if(a instanceof ByteArrayBinary && b instanceof ByteArrayBinary) {
+            return compare(((ByteArrayBinary) a).value, ((ByteArrayBinary) b).value);
+        } else {
+            return ByteBufferBinary.compare(a, b);
+        }
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        if(a == b) {
+            return 0; // shortcut for shared or interned values
         }
-        return Integer.compare(a.byteCount(), b.byteCount());
+        return ByteBufferBinary.compare(ByteBuffer.wrap(a), ByteBuffer.wrap(b)); // eight bytes at a time
     }
 }
@@ -0,0 +1,150 @@
+package styx.data.impl.value;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+import styx.data.Binary;
+import styx.data.Kind;
+import styx.data.Value;
+
+/**
+ * An implementation of a binary value as a read-only ByteBuffer, which can be a heap, direct or memory-mapped buffer.
+ * <p>
+ * The bytes are never copied, neither when constructing, nor when slicing or when exposing the value as a buffer.
+ * The buffer is only accessed using absolute gets, so its position and limit never change.
+ */
+public class ByteBufferBinary extends AbstractValue implements Binary {
+
+    private final ByteBuffer buffer;
+
+    /** the hash code, lazily computed, zero if not yet computed */
+    private int hash;
+
+    private ByteBufferBinary(ByteBuffer buffer) {
+        this.buffer = Objects.requireNonNull(buffer);
+    }
+
+    /**
+     * Constructs a binary value that shares the remaining bytes of the given buffer (zero-copy).
+     * <p>
+     * The position and limit of the given buffer are not modified. The caller must guarantee that the content
+     * of the buffer is never modified afterwards.
+     *
+     * @param buffer the buffer, can be null.
+     * @return a binary value, never null.
+     */
+    public static Binary wrap(ByteBuffer buffer) {
+        if(buffer == null || !buffer.hasRemaining()) {
+            return ByteArrayBinary.valueOf(null);
+        } else {
+            return new ByteBufferBinary(buffer.slice().asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN));
+        }
+    }
+
+    @Override
+    public int compareTo(Value other) {
+        if(other.isBinary()) {
+            return compare(this, other.asBinary());
+        } else {
+            return compare(kind(), other.kind());
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if(result == 0) {
+            result = 1; // same as Arrays.hashCode(byte[])
+            int byteCount = buffer.limit();
+            for(int index = 0; index < byteCount; index++) {
+                result = 31 * result + buffer.get(index);
+            }
+            hash = result;
+        }
+        return result;
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(1, 4));
+        if(footprint.visit(buffer)) {
+            // the buffer itself and its content, which may be off-heap or shared with other buffers
+            footprint.count(kind(), ValueFootprint.object(2, 31) + ValueFootprint.array(buffer.capacity(), 1));
+        }
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.BINARY;
+    }
+
+    @Override
+    public int byteCount() {
+        return buffer.limit();
+    }
+
+    @Override
+    public byte byteAt(int index) {
+        return buffer.get(index);
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[buffer.limit()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public Binary slice(int fromIndex, int toIndex) {
+        if(fromIndex < 0 || fromIndex > toIndex || toIndex > buffer.limit()) {
+            throw new IndexOutOfBoundsException();
+        }
+        if(fromIndex == 0 && toIndex == buffer.limit()) {
+            return this;
+        }
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(toIndex).position(fromIndex);
+        return wrap(slice);
+    }
+
+    @Override
+    public ByteBuffer asReadOnlyBuffer() {
+        return buffer.duplicate();
+    }
+
+    static int compare(Binary a, Binary b) {
+        if(a == b) {
+            return 0; // shortcut for shared or interned values
+        }
+        return compare(a.asReadOnlyBuffer(), b.asReadOnlyBuffer());
+    }
+
+    /**
+     * Compares the bytes (as unsigned values) between position and limit, eight bytes at a time.
+     */
+    static int compare(ByteBuffer a, ByteBuffer b) {
+        a.order(ByteOrder.BIG_ENDIAN);
+        b.order(ByteOrder.BIG_ENDIAN);
+        int positionA = a.position();
+        int positionB = b.position();
+        int commonByteCount = Math.min(a.remaining(), b.remaining());
+        int index = 0;
+        for(; index + 8 <= commonByteCount; index += 8) {
+            long longA = a.getLong(positionA + index);
+            long longB = b.getLong(positionB + index);
+            if(longA != longB) {
+                return Long.compareUnsigned(longA, longB);
+            }
+        }
+        for(; index < commonByteCount; index++) {
+            byte byteA = a.get(positionA + index);
+            byte byteB = b.get(positionB + index);
+            if(byteA != byteB) {
+                return Integer.compare(byteA & 0xFF, byteB & 0xFF);
+            }
+        }
+        return Integer.compare(a.remaining(), b.remaining());
+    }
+}
@@ -0,0 +1,125 @@
+package styx.data.impl.value;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import styx.data.Change;
+import styx.data.Complex;
+import styx.data.Pair;
+import styx.data.Reference;
+import styx.data.Value;
+import styx.data.Values;
+
+/**
+ * Computes the changes between two complex values, recursing into nested complex values.
+ * <p>
+ * Values which are shared between both versions (i.e. identical instances) are skipped without looking into them.
+ * For trees, B-trees and dense lists, this also applies to shared subtrees and leaves, so that comparing two
+ * versions of a large value, one of which has been derived from the other by a few put() operations, takes time
+ * proportional to the number of changes (times log n) rather than to the size of the value.
+ */
+public class ComplexDiff {
+
+    private final List<Change> changes = new ArrayList<>();
+
+    private ComplexDiff() { }
+
+    /**
+     * Returns the changes that turn the first value into the second one.
+     *
+     * @param oldValue the first value, must not be null.
+     * @param newValue the second value, must not be null.
+     * @return the changes, in the order of their paths.
+     */
+    public static List<Change> diff(Complex oldValue, Complex newValue) {
+        ComplexDiff diff = new ComplexDiff();
+        diff.diff(Values.root(), oldValue, newValue);
+        return diff.changes;
+    }
+
+    void diff(Reference path, Complex oldValue, Complex newValue) {
+        oldValue = LazyComplex.unwrap(oldValue);
+        newValue = LazyComplex.unwrap(newValue);
+        if(oldValue == newValue) {
+            return;
+        } else if(oldValue instanceof BinaryTreeComplex && newValue instanceof BinaryTreeComplex) {
+            BinaryTreeComplex.diff(this, path, (BinaryTreeComplex) oldValue, (BinaryTreeComplex) newValue);
+        } else if(oldValue instanceof BTreeComplex && newValue instanceof BTreeComplex) {
+            BTreeComplex.diff(this, path, (BTreeComplex) oldValue, (BTreeComplex) newValue);
+        } else if(oldValue instanceof VectorTrieComplex && newValue instanceof VectorTrieComplex) {
+            VectorTrieComplex.diff(this, path, (VectorTrieComplex) oldValue, (VectorTrieComplex) newValue);
+        } else {
+            diff(path, oldValue.iterator(), newValue.iterator());
+        }
+    }
+
+    /**
+     * Compares the entries of two iterators, which must be in the order of their keys.
+     */
+    void diff(Reference path, Iterator<Pair> oldIterator, Iterator<Pair> newIterator) {
+        Pair oldPair = oldIterator.hasNext() ? oldIterator.next() : null;
+        Pair newPair = newIterator.hasNext() ? newIterator.next() : null;
+        while(oldPair != null || newPair != null) {
+            int order = oldPair == null ? 1 : newPair == null ? -1 : oldPair.key().compareTo(newPair.key());
+            if(order < 0) {
+                entry(path, oldPair.key(), oldPair.value(), null);
+                oldPair = oldIterator.hasNext() ? oldIterator.next() : null;
+            } else if(order > 0) {
+                entry(path, newPair.key(), null, newPair.value());
+                newPair = newIterator.hasNext() ? newIterator.next() : null;
+            } else {
+                entry(path, oldPair.key(), oldPair.value(), newPair.value());
+                oldPair = oldIterator.hasNext() ? oldIterator.next() : null;
+                newPair = newIterator.hasNext() ? newIterator.next() : null;
+            }
+        }
+    }
+
+    /**
+     * Compares the old and the new value of an entry, either of which can be null if not existing.
+     */
+    void entry(Reference path, Value key, Value oldValue, Value newValue) {
+        if(oldValue == newValue) {
+            return;
+        } else if(oldValue != null && newValue != null && oldValue.isComplex() && newValue.isComplex()) {
+            diff(path.child(key), oldValue.asComplex(), newValue.asComplex());
+        } else if(oldValue == null || newValue == null || !oldValue.equals(newValue)) {
+            changes.add(new DefaultChange(path.child(key), oldValue, newValue));
+        }
+    }
+
+    private static class DefaultChange implements Change {
+
+        private final Reference path;
+        private final Value oldValue;
+        private final Value newValue;
+
+        private DefaultChange(Reference path, Value oldValue, Value newValue) {
+            this.path = path;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        @Override
+        public Reference path() {
+            return path;
+        }
+
+        @Override
+        public Optional<Value> oldValue() {
+            return Optional.ofNullable(oldValue);
+        }
+
+        @Override
+        public Optional<Value> newValue() {
+            return Optional.ofNullable(newValue);
+        }
+
+        @Override
+        public String toString() {
+            return path + ": " + oldValue + " -> " + newValue;
+        }
+    }
+}
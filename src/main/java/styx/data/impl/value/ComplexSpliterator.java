@@ -0,0 +1,85 @@
+package styx.data.impl.value;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import styx.data.Pair;
+
+/**
+ * A spliterator over the entries of a complex value, which covers a range of positions in key order.
+ * <p>
+ * Splitting divides the range into two halves of equal size, so that parallel streams are balanced and know
+ * the exact size of every part. Traversal starts with an iterator that seeks to the first position of the range,
+ * which takes O(log n) time for trees.
+ */
+class ComplexSpliterator implements Spliterator<Pair> {
+
+    private static final Comparator<Pair> KEY_ORDER = Comparator.comparing(Pair::key);
+
+    private final AbstractComplex complex;
+    private int index;
+    private final int fence;
+
+    /** the iterator positioned at index, null if traversal has not yet started */
+    private Iterator<Pair> iterator;
+
+    ComplexSpliterator(AbstractComplex complex, int fromIndex, int toIndex) {
+        this.complex = complex;
+        this.index = fromIndex;
+        this.fence = toIndex;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Pair> action) {
+        if(index >= fence) {
+            return false;
+        }
+        if(iterator == null) {
+            iterator = complex.iterator(index);
+        }
+        index++;
+        action.accept(iterator.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Pair> action) {
+        if(index < fence && iterator == null) {
+            iterator = complex.iterator(index);
+        }
+        while(index < fence) {
+            index++;
+            action.accept(iterator.next());
+        }
+    }
+
+    @Override
+    public Spliterator<Pair> trySplit() {
+        int mid = (index + fence) >>> 1;
+        if(mid <= index) {
+            return null;
+        }
+        ComplexSpliterator prefix = new ComplexSpliterator(complex, index, mid);
+        prefix.iterator = iterator; // the prefix continues where this one has stopped
+        iterator = null;
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SORTED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    @Override
+    public Comparator<? super Pair> getComparator() {
+        return KEY_ORDER;
+    }
+}
@@ -1,5 +1,7 @@
 package styx.data.impl.value;
 
+import java.math.BigDecimal;
+
 class DoubleNumeric extends AbstractNumeric {
 
     private final double value;
@@ -13,6 +15,24 @@ class DoubleNumeric extends AbstractNumeric {
         return value;
     }
 
+    @Override
+    public BigDecimal toBigDecimal() {
+        if(!Double.isFinite(value)) {
+            throw new ArithmeticException("The number cannot be represented by a BigDecimal.");
+        }
+        return BigDecimal.valueOf(value); // the shortest decimal representation
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(value);
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(0, 8));
+    }
+
     @Override
     public String toDecimalString() {
         return Double.toString(value);
@@ -1,5 +1,7 @@
 package styx.data.impl.value;
 
+import java.math.BigDecimal;
+
 class IntegerNumeric extends AbstractNumeric {
 
     private final int value;
@@ -28,6 +30,21 @@ class IntegerNumeric extends AbstractNumeric {
         return value;
     }
 
+    @Override
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(0, 4));
+    }
+
     @Override
     public String toDecimalString() {
         return Integer.toString(value);
@@ -0,0 +1,245 @@
+package styx.data.impl.value;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+import styx.data.Change;
+import styx.data.Complex;
+import styx.data.Pair;
+import styx.data.Value;
+
+/**
+ * A proxy for a complex value which is materialized on first access, for example a block of parsed text.
+ * <p>
+ * Users never create instances directly. Instead, the parser creates them for nested blocks when parsing lazily,
+ * see Values.parseLazy(). All methods materialize the value (once, the result is cached) and delegate to it.
+ * Because of that, a proxy is equal to, has the same hash code as and compares like the materialized value.
+ * <p>
+ * Errors in the underlying source (like invalid syntax) are not detected before the value is materialized,
+ * they are thrown by the first method which accesses the value.
+ */
+public class LazyComplex extends AbstractComplex {
+
+    /** the supplier of the value, null after the value has been materialized */
+    private Supplier<Complex> supplier;
+
+    /** the materialized value, null if not yet materialized */
+    private volatile Complex value;
+
+    private LazyComplex(Supplier<Complex> supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     * Constructs a complex value which is materialized by the given supplier on first access.
+     *
+     * @param supplier the supplier, must not be null, will be called at most once, must not return null.
+     * @return the complex value, never null.
+     */
+    public static LazyComplex of(Supplier<Complex> supplier) {
+        return new LazyComplex(Objects.requireNonNull(supplier));
+    }
+
+    /**
+     * Checks if the value has already been materialized.
+     */
+    public boolean isMaterialized() {
+        return value != null;
+    }
+
+    /**
+     * Returns the materialized value for a proxy, or the given value itself.
+     */
+    static Complex unwrap(Complex value) {
+        return value instanceof LazyComplex ? ((LazyComplex) value).value() : value;
+    }
+
+    private Complex value() {
+        Complex result = value;
+        if(result == null) {
+            synchronized(this) {
+                result = value;
+                if(result == null) {
+                    result = unwrap(Objects.requireNonNull(supplier.get()));
+                    value = result;
+                    supplier = null; // release the source
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int compareTo(Value other) {
+        return value().compareTo(other instanceof LazyComplex ? ((LazyComplex) other).value() : other);
+    }
+
+    @Override
+    public int hashCode() {
+        return value().hashCode();
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(2, 0));
+        Complex result = value;
+        if(result != null) {
+            footprint.value(result);
+        } else {
+            footprint.count(kind(), ValueFootprint.object(1, 4)); // the supplier, without the source it refers to
+        }
+    }
+
+    @Override
+    public Iterator<Pair> iterator() {
+        return value().iterator();
+    }
+
+    @Override
+    protected Iterator<Pair> iterator(int fromIndex) {
+        Complex result = value();
+        return result instanceof AbstractComplex ? ((AbstractComplex) result).iterator(fromIndex) : super.iterator(fromIndex);
+    }
+
+    @Override
+    public Spliterator<Pair> spliterator() {
+        return value().spliterator();
+    }
+
+    @Override
+    public int size() {
+        return value().size();
+    }
+
+    @Override
+    public Pair entryAt(int index) {
+        return value().entryAt(index);
+    }
+
+    @Override
+    public int rankOf(Value key) {
+        return value().rankOf(key);
+    }
+
+    @Override
+    public Optional<Pair> first() {
+        return value().first();
+    }
+
+    @Override
+    public Optional<Pair> last() {
+        return value().last();
+    }
+
+    @Override
+    public Optional<Pair> floor(Value key) {
+        return value().floor(key);
+    }
+
+    @Override
+    public Optional<Pair> ceiling(Value key) {
+        return value().ceiling(key);
+    }
+
+    @Override
+    public Complex headMap(Value toKey) {
+        return value().headMap(toKey);
+    }
+
+    @Override
+    public Complex tailMap(Value fromKey) {
+        return value().tailMap(fromKey);
+    }
+
+    @Override
+    public Complex subMap(Value fromKey, Value toKey) {
+        return value().subMap(fromKey, toKey);
+    }
+
+    @Override
+    public Iterator<Pair> descendingIterator() {
+        return value().descendingIterator();
+    }
+
+    @Override
+    public Optional<Value> get(Value key) {
+        return value().get(key);
+    }
+
+    @Override
+    public Complex put(Value key, Value value) {
+        return value().put(key, value);
+    }
+
+    @Override
+    public Complex putAll(Pair... pairs) {
+        return value().putAll(pairs);
+    }
+
+    @Override
+    public Complex putAll(Collection<Pair> pairs) {
+        return value().putAll(pairs);
+    }
+
+    @Override
+    public Complex putAll(Map<? extends Value, ? extends Value> values) {
+        return value().putAll(values);
+    }
+
+    @Override
+    public Complex add(Value value) {
+        return value().add(value);
+    }
+
+    @Override
+    public Complex addAll(Value... values) {
+        return value().addAll(values);
+    }
+
+    @Override
+    public Complex addAll(Collection<? extends Value> values) {
+        return value().addAll(values);
+    }
+
+    @Override
+    public Complex merge(Complex other, BinaryOperator<Value> conflict) {
+        return value().merge(unwrap(other), conflict);
+    }
+
+    @Override
+    public Complex intersect(Complex other) {
+        return value().intersect(unwrap(other));
+    }
+
+    @Override
+    public Complex difference(Complex other) {
+        return value().difference(unwrap(other));
+    }
+
+    @Override
+    public Complex[] split(Value key) {
+        return value().split(key);
+    }
+
+    @Override
+    public Complex concat(Complex other) {
+        return value().concat(unwrap(other));
+    }
+
+    @Override
+    public List<Change> diff(Complex other) {
+        return value().diff(unwrap(other));
+    }
+
+    @Override
+    public long nextIndex() {
+        return value().nextIndex();
+    }
+}
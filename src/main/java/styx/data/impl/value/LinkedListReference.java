@@ -22,6 +22,9 @@ public class LinkedListReference extends AbstractValue implements Reference {
     private final int partCount;
     private final Value lastPart;
 
+    /** the hash code, lazily computed, zero if not yet computed */
+    private int hash;
+
     private LinkedListReference() {
         this.parent = null;
         this.partCount = 0;
@@ -43,6 +46,26 @@ public class LinkedListReference extends AbstractValue implements Reference {
         }
     }
 
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if(result == 0 && parent != null) {
+            result = hash = 31 * parent.hashCode() + lastPart.hashCode();
+        }
+        return result;
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        for(LinkedListReference node = this; node.parent != null; node = node.parent) {
+            if(node != this && !footprint.visit(node)) {
+                break; // the remaining nodes are shared and have already been counted
+            }
+            footprint.count(kind(), ValueFootprint.object(2, 8));
+            footprint.value(node.lastPart);
+        }
+    }
+
     @Override
     public Kind kind() {
         return Kind.REFERENCE;
@@ -76,6 +99,9 @@ public class LinkedListReference extends AbstractValue implements Reference {
     }
 
     private static int compare(Reference a, Reference b) {
+        if(a == b) {
+            return 0; // shortcut for shared or interned values
+        }
         int commonByteCount = Math.min(a.partCount(), b.partCount());
         for(int index = 0; index < commonByteCount; index++) {
             int order = a.partAt(index).compareTo(b.partAt(index));
@@ -1,5 +1,7 @@
 package styx.data.impl.value;
 
+import java.math.BigDecimal;
+
 class LongNumeric extends AbstractNumeric {
 
     private final long value;
@@ -18,6 +20,21 @@ class LongNumeric extends AbstractNumeric {
         return value;
     }
 
+    @Override
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(value);
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(0, 8));
+    }
+
     @Override
     public String toDecimalString() {
         return Long.toString(value);
@@ -0,0 +1,230 @@
+package styx.data.impl.value;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+
+import styx.data.Complex;
+import styx.data.Pair;
+import styx.data.Value;
+import styx.data.Values;
+
+/**
+ * An implementation of a small complex value as a pair of immutable, sorted arrays of keys and values.
+ * <p>
+ * Users never create instances directly. Instead, BinaryTreeComplex picks this implementation automatically
+ * for values with up to MAX_SIZE entries (unless the keys are dense, see VectorTrieComplex).
+ * <p>
+ * Keys are looked up by binary search, and every put() copies the arrays, which is cheaper than copying the path
+ * of a tree for small sizes. When growing beyond MAX_SIZE entries, the value is converted into a BinaryTreeComplex.
+ * Values which become smaller by removing entries are not converted back.
+ */
+public class SortedArrayComplex extends AbstractComplex {
+
+    /** the maximum number of entries */
+    static final int MAX_SIZE = 16;
+
+    /** the keys, strictly ascending */
+    private final Value[] keys;
+
+    /** the values, in the same order as the keys */
+    private final Value[] values;
+
+    /** the hash code, lazily computed, zero if not yet computed */
+    private int hash;
+
+    /** the estimate of ValueFootprint.retainedSize(), lazily computed, zero if not yet computed */
+    private volatile long retainedSize;
+
+    private SortedArrayComplex(Value[] keys, Value[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Constructs a complex value from the given keys and values.
+     *
+     * @param keys the keys, strictly ascending, the array is owned by the new instance afterwards.
+     * @param values the values, the array is owned by the new instance afterwards.
+     * @return the complex value, never null.
+     */
+    static SortedArrayComplex valueOf(Value[] keys, Value[] values) {
+        if(keys.length == 0 || keys.length > MAX_SIZE || keys.length != values.length) {
+            throw new IllegalArgumentException();
+        }
+        return new SortedArrayComplex(keys, values);
+    }
+
+    /**
+     * Returns a copy of the given complex value, which must not have more than MAX_SIZE entries.
+     */
+    static SortedArrayComplex copyOf(Complex other) {
+        int size = other.size();
+        Value[] keys = new Value[size];
+        Value[] values = new Value[size];
+        int index = 0;
+        for(Pair pair : other) {
+            keys[index] = pair.key();
+            values[index] = pair.value();
+            index++;
+        }
+        return valueOf(keys, values);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if(result == 0) {
+            for(int index = 0; index < keys.length; index++) {
+                result += keys[index].hashCode() ^ values[index].hashCode();
+            }
+            hash = result;
+        }
+        return result;
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(2, 12));
+        if(footprint.visit(keys)) {
+            footprint.count(kind(), ValueFootprint.referenceArray(keys.length)); // can be shared by copies
+        }
+        footprint.count(kind(), ValueFootprint.referenceArray(values.length));
+        for(int index = 0; index < keys.length; index++) {
+            footprint.value(keys[index]);
+            footprint.value(values[index]);
+        }
+    }
+
+    @Override
+    long retainedSize() {
+        long result = retainedSize;
+        if(result == 0) {
+            result = retainedSize = super.retainedSize();
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<Pair> iterator() {
+        return new ArrayIterator();
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public Pair entryAt(int index) {
+        if(index < 0 || index >= keys.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + keys.length);
+        }
+        return Values.pair(keys[index], values[index]);
+    }
+
+    @Override
+    public int rankOf(Value key) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    @Override
+    public Optional<Value> get(Value key) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? Optional.of(values[index]) : Optional.empty();
+    }
+
+    @Override
+    public Complex put(Value key, Value value) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        int index = Arrays.binarySearch(keys, key);
+        if(index >= 0) {
+            if(value != null) {
+                Value[] newValues = values.clone(); // replace, the keys can be shared
+                newValues[index] = value;
+                return new SortedArrayComplex(keys, newValues);
+            } else if(keys.length == 1) {
+                return BinaryTreeComplex.EMPTY;
+            } else {
+                return new SortedArrayComplex(remove(keys, index), remove(values, index));
+            }
+        } else if(value == null) {
+            return this; // removing a non-existing key
+        } else if(keys.length < MAX_SIZE) {
+            index = -(index + 1);
+            return new SortedArrayComplex(insert(keys, index, key), insert(values, index, value));
+        } else {
+            return BinaryTreeComplex.builder(this).put(key, value).build();
+        }
+    }
+
+    @Override
+    public Complex putAll(Collection<Pair> pairs) {
+        if(pairs != null && keys.length + pairs.size() > MAX_SIZE) {
+            BinaryTreeComplex.Builder builder = BinaryTreeComplex.builder(this);
+            for(Pair pair : pairs) {
+                builder.put(pair.key(), pair.value());
+            }
+            return builder.build();
+        } else {
+            return super.putAll(pairs);
+        }
+    }
+
+    @Override
+    public long nextIndex() {
+        for(int index = keys.length - 1; index >= 0; index--) {
+            if(keys[index].isNumeric()) {
+                return AbstractNumeric.nextIndex(keys[index].asNumeric()); // numbers are ordered before other kinds
+            }
+        }
+        return 1;
+    }
+
+    private static Value[] insert(Value[] array, int index, Value element) {
+        Value[] result = new Value[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = Objects.requireNonNull(element);
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static Value[] remove(Value[] array, int index) {
+        Value[] result = new Value[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    private class ArrayIterator implements Iterator<Pair> {
+
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+            return index < keys.length;
+        }
+
+        @Override
+        public Pair next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Pair pair = Values.pair(keys[index], values[index]);
+            index++;
+            return pair;
+        }
+    }
+}
@@ -26,18 +26,48 @@ public class StringText extends AbstractValue implements Text {
 
     @Override
     public int compareTo(Value other) {
-        if(other.isText()) {
+        if(other instanceof Utf8Text) {
+            return -other.compareTo(this);
+        } else if(other.isText()) {
             return toCharString().compareTo(other.asText().toCharString());
         } else {
             return compare(kind(), other.kind());
         }
     }
 
+    @Override
+    public int hashCode() {
+        return value.hashCode(); // memoized by String
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(1, 0));
+        if(footprint.visit(value)) {
+            footprint.count(kind(), ValueFootprint.object(1, 4) + ValueFootprint.array(value.length(), 2));
+        }
+    }
+
     @Override
     public Kind kind() {
         return Kind.TEXT;
     }
 
+    @Override
+    public int charCount() {
+        return value.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return value.charAt(index);
+    }
+
+    @Override
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        value.getChars(srcBegin, srcEnd, dst, dstBegin);
+    }
+
     @Override
     public String toCharString() {
         return value;
@@ -0,0 +1,353 @@
+package styx.data.impl.value;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+import styx.data.Kind;
+import styx.data.Text;
+import styx.data.Value;
+
+/**
+ * An implementation of a textual value as a slice of UTF-8 encoded bytes.
+ * <p>
+ * The bytes are never decoded into a String for comparing, hashing or writing: non-ASCII values are decoded
+ * into UTF-16 code units one by one while scanning, without allocating, and writing copies the bytes as they
+ * are. Pure ASCII values, which is what identifiers are, also support charAt() in O(1), while charAt() of other
+ * values scans the bytes up to the given index.
+ * <p>
+ * Values are compared bytewise, but in the same order as StringText (i.e. by UTF-16 code units as defined by
+ * String.compareTo()), and they have the same hash codes as equal StringText values.
+ */
+public class Utf8Text extends AbstractValue implements Text {
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    /** the number of UTF-16 code units, equal to length for pure ASCII values */
+    private final int charCount;
+
+    /** the hash code, lazily computed, zero if not yet computed */
+    private int hash;
+
+    private Utf8Text(byte[] bytes, int offset, int length) {
+        this.bytes = Objects.requireNonNull(bytes);
+        this.offset = offset;
+        this.length = length;
+        this.charCount = countChars(bytes, offset, length);
+    }
+
+    /**
+     * Constructs a textual value from a copy of the given UTF-8 encoded bytes.
+     *
+     * @param bytes the UTF-8 encoded bytes, must not be null and must be valid UTF-8.
+     * @param offset the index of the first byte.
+     * @param length the number of bytes.
+     * @return a textual value, never null.
+     * @throws IllegalArgumentException if the bytes are not valid UTF-8.
+     */
+    public static Text valueOf(byte[] bytes, int offset, int length) {
+        checkValid(bytes, offset, length);
+        if(length == 0) {
+            return StringText.valueOf(null);
+        } else {
+            return new Utf8Text(Arrays.copyOfRange(bytes, offset, offset + length), 0, length);
+        }
+    }
+
+    /**
+     * Constructs a textual value that shares the given UTF-8 encoded bytes (zero-copy).
+     * <p>
+     * The caller must guarantee that the given range of the array is never modified afterwards.
+     *
+     * @param bytes the UTF-8 encoded bytes, must not be null and must be valid UTF-8.
+     * @param offset the index of the first byte.
+     * @param length the number of bytes.
+     * @return a textual value, never null.
+     * @throws IllegalArgumentException if the bytes are not valid UTF-8.
+     */
+    public static Text wrap(byte[] bytes, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        checkValid(bytes, offset, length);
+        if(length == 0) {
+            return StringText.valueOf(null);
+        } else {
+            return new Utf8Text(bytes, offset, length);
+        }
+    }
+
+    @Override
+    public int compareTo(Value other) {
+        if(other instanceof Utf8Text) {
+            return compare(this, (Utf8Text) other);
+        } else if(other.isText()) {
+            return compare(this, other.asText());
+        } else {
+            return compare(kind(), other.kind());
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if(result == 0) {
+            if(isAscii()) {
+                for(int index = offset; index < offset + length; index++) {
+                    result = 31 * result + bytes[index];
+                }
+            } else {
+                for(int index = offset; index < offset + length; index += sequenceLength(bytes[index])) {
+                    int codePoint = codePointAt(index);
+                    if(codePoint < 0x10000) {
+                        result = 31 * result + codePoint;
+                    } else {
+                        result = 31 * (31 * result + Character.highSurrogate(codePoint)) + Character.lowSurrogate(codePoint);
+                    }
+                }
+            }
+            hash = result;
+        }
+        return result;
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(1, 16));
+        if(footprint.visit(bytes)) {
+            footprint.count(kind(), ValueFootprint.array(bytes.length, 1)); // shared by slices
+        }
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.TEXT;
+    }
+
+    @Override
+    public int charCount() {
+        return charCount;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if(isAscii()) {
+            if(index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException();
+            }
+            return (char) bytes[offset + index];
+        } else {
+            if(index < 0 || index >= charCount) {
+                throw new IndexOutOfBoundsException();
+            }
+            int position = 0;
+            for(int byteIndex = offset; ; byteIndex += sequenceLength(bytes[byteIndex])) {
+                int codePoint = codePointAt(byteIndex);
+                if(codePoint < 0x10000) {
+                    if(position++ == index) {
+                        return (char) codePoint;
+                    }
+                } else {
+                    if(position++ == index) {
+                        return Character.highSurrogate(codePoint);
+                    } else if(position++ == index) {
+                        return Character.lowSurrogate(codePoint);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        if(isAscii()) {
+            if(srcBegin < 0 || srcBegin > srcEnd || srcEnd > length) {
+                throw new IndexOutOfBoundsException();
+            }
+            for(int index = srcBegin; index < srcEnd; index++) {
+                dst[dstBegin++] = (char) bytes[offset + index];
+            }
+        } else {
+            if(srcBegin < 0 || srcBegin > srcEnd || srcEnd > charCount) {
+                throw new IndexOutOfBoundsException();
+            }
+            int position = 0;
+            for(int byteIndex = offset; position < srcEnd; byteIndex += sequenceLength(bytes[byteIndex])) {
+                int codePoint = codePointAt(byteIndex);
+                if(codePoint < 0x10000) {
+                    if(position >= srcBegin) {
+                        dst[dstBegin++] = (char) codePoint;
+                    }
+                    position++;
+                } else {
+                    if(position >= srcBegin) {
+                        dst[dstBegin++] = Character.highSurrogate(codePoint);
+                    }
+                    if(++position >= srcBegin && position < srcEnd) {
+                        dst[dstBegin++] = Character.lowSurrogate(codePoint);
+                    }
+                    position++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toCharString() {
+        return new String(bytes, offset, length, isAscii() ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of UTF-8 encoded bytes of this value.
+     *
+     * @return the number of bytes.
+     */
+    public int byteCount() {
+        return length;
+    }
+
+    /**
+     * Writes the UTF-8 encoded bytes of this value to the given stream, without decoding or copying them.
+     *
+     * @param stream the destination, must not be null.
+     * @throws IOException if writing to the stream fails.
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        stream.write(bytes, offset, length);
+    }
+
+    private boolean isAscii() {
+        return charCount == length;
+    }
+
+    /**
+     * Decodes the code point of the sequence starting at the given index, which has been validated on construction.
+     */
+    private int codePointAt(int index) {
+        int lead = bytes[index] & 0xFF;
+        if(lead < 0x80) {
+            return lead;
+        }
+        int count = sequenceLength(bytes[index]) - 1;
+        int codePoint = lead & (0x3F >> count);
+        for(int i = 1; i <= count; i++) {
+            codePoint = (codePoint << 6) | (bytes[index + i] & 0x3F);
+        }
+        return codePoint;
+    }
+
+    private static int sequenceLength(byte lead) {
+        int unsignedByte = lead & 0xFF;
+        return unsignedByte < 0x80 ? 1 : unsignedByte >= 0xF0 ? 4 : unsignedByte >= 0xE0 ? 3 : 2;
+    }
+
+    /**
+     * Checks if the given bytes are well-formed UTF-8 (no overlong forms, no surrogates, nothing beyond U+10FFFF).
+     */
+    static boolean isValid(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int index = offset;
+        while(index < end) {
+            int lead = bytes[index++] & 0xFF;
+            if(lead < 0x80) {
+                continue;
+            }
+            int count;
+            int min;
+            if(lead >= 0xC2 && lead <= 0xDF) {
+                count = 1; min = 0x80;
+            } else if(lead >= 0xE0 && lead <= 0xEF) {
+                count = 2; min = 0x800;
+            } else if(lead >= 0xF0 && lead <= 0xF4) {
+                count = 3; min = 0x10000;
+            } else {
+                return false;
+            }
+            if(end - index < count) {
+                return false;
+            }
+            int codePoint = lead & (0x3F >> count);
+            for(int i = 0; i < count; i++) {
+                int trail = bytes[index++] & 0xFF;
+                if((trail & 0xC0) != 0x80) {
+                    return false;
+                }
+                codePoint = (codePoint << 6) | (trail & 0x3F);
+            }
+            if(codePoint < min || codePoint > 0x10FFFF || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkValid(byte[] bytes, int offset, int length) {
+        if(!isValid(bytes, offset, length)) {
+            throw new IllegalArgumentException("The bytes must be valid UTF-8.");
+        }
+    }
+
+    private static int countChars(byte[] bytes, int offset, int length) {
+        int charCount = 0;
+        for(int index = offset; index < offset + length; index++) {
+            int unsignedByte = bytes[index] & 0xFF;
+            if(unsignedByte < 0x80 || unsignedByte >= 0xC0) {
+                charCount++; // ASCII or lead byte
+            }
+            if(unsignedByte >= 0xF0) {
+                charCount++; // lead byte of a supplementary character, which becomes a surrogate pair
+            }
+        }
+        return charCount;
+    }
+
+    private static int compare(Utf8Text a, Utf8Text b) {
+        if(a == b) {
+            return 0; // shortcut for shared or interned values
+        }
+        int commonLength = Math.min(a.length, b.length);
+        for(int index = 0; index < commonLength; index++) {
+            int byteA = a.bytes[a.offset + index] & 0xFF;
+            int byteB = b.bytes[b.offset + index] & 0xFF;
+            if(byteA != byteB) {
+                // After a common prefix, both bytes are either continuation bytes of the same sequence length or lead bytes.
+                // The bytewise order equals the order of code points, which differs from the order of UTF-16 code units
+                // only when comparing U+E000..U+FFFF (lead bytes EE, EF) to supplementary characters (lead bytes F0..F4),
+                // because the latter are represented by surrogates (D800..DFFF) in UTF-16.
+                if(byteA >= 0xEE && byteB >= 0xEE && (byteA >= 0xF0) != (byteB >= 0xF0)) {
+                    return byteA >= 0xF0 ? -1 : 1;
+                }
+                return Integer.compare(byteA, byteB);
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    /**
+     * Compares by UTF-16 code units like String.compareTo(), decoding the bytes of a while comparing them to b.
+     */
+    private static int compare(Utf8Text a, Text b) {
+        int charCountB = b.charCount();
+        int position = 0;
+        for(int index = a.offset; index < a.offset + a.length && position < charCountB; index += sequenceLength(a.bytes[index])) {
+            int codePoint = a.codePointAt(index);
+            char charA = codePoint < 0x10000 ? (char) codePoint : Character.highSurrogate(codePoint);
+            char charB = b.charAt(position++);
+            if(charA != charB) {
+                return Character.compare(charA, charB);
+            }
+            if(codePoint >= 0x10000 && position < charCountB) {
+                charA = Character.lowSurrogate(codePoint);
+                charB = b.charAt(position++);
+                if(charA != charB) {
+                    return Character.compare(charA, charB);
+                }
+            }
+        }
+        return Integer.compare(a.charCount, charCountB);
+    }
+}
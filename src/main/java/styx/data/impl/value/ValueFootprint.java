@@ -0,0 +1,169 @@
+package styx.data.impl.value;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import styx.data.Kind;
+import styx.data.Pair;
+import styx.data.Value;
+
+/**
+ * An estimator for the heap memory that is retained by values.
+ * <p>
+ * The estimate is the sum of the shallow sizes of all objects that are reachable from the values, where every
+ * object is counted only once. Because of that, subtrees which are shared (within a value, or between several
+ * values added to the same instance) are counted only once, too. Shared singletons (like the empty value)
+ * and caches (like the children of an ArrayReference) are not counted.
+ * <p>
+ * The shallow sizes assume a 64-bit JVM with compressed references: 12 bytes per object header, 16 bytes per
+ * array header, 4 bytes per reference and a granularity of 8 bytes. The bytes are attributed to the kind of
+ * the value whose representation contains the object.
+ * <p>
+ * Estimating takes time linear in the number of objects that have not yet been counted, and the identity set
+ * of the counted objects grows accordingly, so a new instance walks a value completely again. For a cheaper
+ * estimate, which is memoized in the values, see retainedSize(). Instances are not thread-safe.
+ */
+public class ValueFootprint {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    /** the objects counted so far, or null if objects are counted every time they are reached */
+    private final Set<Object> visited;
+    private final long[] bytesByKind = new long[Kind.values().length];
+    private long total;
+
+    public ValueFootprint() {
+        this.visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private ValueFootprint(Set<Object> visited) {
+        this.visited = visited;
+    }
+
+    /**
+     * Returns an estimate of the heap memory retained by the given value, which is memoized in the values.
+     * <p>
+     * Unlike the estimate of an instance of this class, parts which are reachable on several paths are counted
+     * once per path, so that the estimate of a value is the sum of the estimates of its parts, and can be
+     * memoized in every immutable node. Therefore, the estimate of a value derived from another one by a few
+     * modifications only visits the copied nodes, while the parts it shares with the other value (or the same
+     * value used several times within it) are counted completely. The result is an upper bound of the exact
+     * estimate, which it equals if nothing is shared.
+     *
+     * @param value the value, must not be null.
+     * @return the number of bytes.
+     */
+    public static long retainedSize(Value value) {
+        if(value instanceof AbstractValue) {
+            return ((AbstractValue) value).retainedSize();
+        } else {
+            ValueFootprint footprint = new ValueFootprint(null);
+            footprint.value(value);
+            return footprint.total;
+        }
+    }
+
+    /**
+     * Returns the sum of the shallow sizes of the objects of the given value and the memoized estimates of its parts.
+     */
+    static long retainedSize(AbstractValue value) {
+        ValueFootprint footprint = new ValueFootprint(null);
+        value.footprint(footprint);
+        return footprint.total;
+    }
+
+    /**
+     * Adds a value to the estimate, ignoring all parts of it which have already been counted.
+     *
+     * @param value the value, must not be null.
+     * @return the number of bytes added to the estimate, zero if the value has already been counted.
+     */
+    public long add(Value value) {
+        long before = total;
+        value(value);
+        return total - before;
+    }
+
+    /**
+     * Returns the estimated number of bytes of all values added so far.
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Returns the estimated number of bytes of all values added so far, by kind.
+     *
+     * @return a new map, which contains all kinds, never null.
+     */
+    public Map<Kind, Long> byKind() {
+        Map<Kind, Long> result = new EnumMap<>(Kind.class);
+        for(Kind kind : Kind.values()) {
+            result.put(kind, bytesByKind[kind.ordinal()]);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the given value, unless it has already been counted.
+     */
+    void value(Value value) {
+        if(!visit(value)) {
+            return;
+        }
+        if(visited == null && value instanceof AbstractValue) {
+            count(value.kind(), ((AbstractValue) value).retainedSize()); // memoized by complex values
+        } else if(value instanceof AbstractValue) {
+            ((AbstractValue) value).footprint(this);
+        } else {
+            count(value.kind(), object(0, 0)); // an unknown implementation, count the parts only
+            if(value.isComplex()) {
+                for(Pair pair : value.asComplex()) {
+                    value(pair.key());
+                    value(pair.value());
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the given object as counted.
+     *
+     * @return true if the object has not been counted before, or if objects are counted every time.
+     */
+    boolean visit(Object object) {
+        return object != null && (visited == null || visited.add(object));
+    }
+
+    void count(Kind kind, long bytes) {
+        bytesByKind[kind.ordinal()] += bytes;
+        total += bytes;
+    }
+
+    /**
+     * Returns the shallow size of an object with the given number of references and bytes of primitive fields.
+     */
+    static long object(int references, int primitiveBytes) {
+        return align(OBJECT_HEADER + references * REFERENCE + primitiveBytes);
+    }
+
+    /**
+     * Returns the shallow size of an array with the given length and size of elements (REFERENCE for objects).
+     */
+    static long array(int length, int elementBytes) {
+        return align(ARRAY_HEADER + (long) length * elementBytes);
+    }
+
+    static long referenceArray(int length) {
+        return array(length, REFERENCE);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
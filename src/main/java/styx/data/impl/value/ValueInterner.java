@@ -0,0 +1,152 @@
+package styx.data.impl.value;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import styx.data.Complex;
+import styx.data.Pair;
+import styx.data.Reference;
+import styx.data.Value;
+import styx.data.Values;
+
+/**
+ * A weak, concurrent table of canonical values (hash-consing).
+ * <p>
+ * Interning a value returns the canonical instance that is equal to it, so that identical values can share a
+ * single instance. The table holds its entries weakly: a canonical instance is removed as soon as it is no
+ * longer referenced from outside the table.
+ * <p>
+ * Interning relies on the structural, memoized hash codes of the values and on the identity checks of
+ * compareTo(), which make lookups of already canonical values cheap.
+ */
+public class ValueInterner {
+
+    private static final ConcurrentMap<Entry, Entry> table = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Value> queue = new ReferenceQueue<>();
+
+    private ValueInterner() { }
+
+    /**
+     * Returns the canonical instance of the given value (shallow).
+     * <p>
+     * The parts of the value (i.e. the keys and values of a complex value) are not interned. Values which
+     * are or directly contain proxies that are not yet materialized (see LazyComplex) are returned as they are,
+     * because computing their hash codes would defeat lazy parsing.
+     *
+     * @param value the value to be interned, must not be null.
+     * @return the canonical instance, which is equal to the given value and of the same kind, never null.
+     */
+    public static Value intern(Value value) {
+        if(isLazy(value)) {
+            return value;
+        }
+        expungeStaleEntries();
+        Entry entry = new Entry(value, queue);
+        while(true) {
+            Entry existing = table.putIfAbsent(entry, entry);
+            if(existing == null) {
+                return value;
+            }
+            Value canonical = existing.get();
+            if(canonical != null) {
+                return canonical;
+            }
+            table.remove(existing, existing); // cleared in the meantime, replace it
+        }
+    }
+
+    /**
+     * Returns the canonical instance of the given value (deep).
+     * <p>
+     * The parts of references and the keys and values of complex values are interned recursively, before
+     * the value itself is interned.
+     *
+     * @param value the value to be interned, must not be null.
+     * @return the canonical instance, which is equal to the given value and of the same kind, never null.
+     */
+    public static Value internDeep(Value value) {
+        if(value.isReference()) {
+            value = internParts(value.asReference());
+        } else if(value.isComplex()) {
+            value = internEntries(value.asComplex());
+        }
+        return intern(value);
+    }
+
+    private static Reference internParts(Reference value) {
+        boolean modified = false;
+        Value[] parts = new Value[value.partCount()];
+        for(int index = 0; index < parts.length; index++) {
+            parts[index] = internDeep(value.partAt(index));
+            modified |= parts[index] != value.partAt(index);
+        }
+        return modified ? Values.reference(parts) : value;
+    }
+
+    private static Complex internEntries(Complex value) {
+        Complex result = value;
+        for(Pair pair : value) {
+            Value key = internDeep(pair.key());
+            Value val = internDeep(pair.value());
+            if(key != pair.key() || val != pair.value()) {
+                result = result.put(key, val);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isLazy(Value value) {
+        if(value instanceof LazyComplex) {
+            return !((LazyComplex) value).isMaterialized();
+        }
+        if(value.isComplex()) {
+            for(Pair pair : value.asComplex()) {
+                if(pair.value() instanceof LazyComplex && !((LazyComplex) pair.value()).isMaterialized()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void expungeStaleEntries() {
+        Object stale;
+        while((stale = queue.poll()) != null) {
+            table.remove(stale, stale);
+        }
+    }
+
+    /**
+     * A weakly referenced value that is compared by the value's equals() and hashCode() as long as it is
+     * reachable, and by identity after it has been cleared.
+     */
+    private static class Entry extends WeakReference<Value> {
+
+        private final int hash;
+
+        private Entry(Value value, ReferenceQueue<Value> queue) {
+            super(value, queue);
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(other == this) {
+                return true;
+            } else if(other instanceof Entry && ((Entry) other).hash == hash) {
+                Value valueA = get();
+                Value valueB = ((Entry) other).get();
+                return valueA != null && valueB != null && valueA.equals(valueB);
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,581 @@
+package styx.data.impl.value;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+
+import styx.data.Complex;
+import styx.data.Kind;
+import styx.data.Numeric;
+import styx.data.Pair;
+import styx.data.Reference;
+import styx.data.Value;
+import styx.data.Values;
+
+/**
+ * An implementation of a complex value with the keys 1..n (a dense list) as an immutable, 32-way vector trie.
+ * <p>
+ * Users never create instances directly. Instead, BinaryTreeComplex picks this implementation automatically
+ * when a value with dense keys is built, for example by Values.list() or when adding to the empty value.
+ * <p>
+ * Only the values are stored, the keys are implied by their positions, and created on the fly when iterating.
+ * The values are stored in leaves of 32 values each, except for the last (up to) 32 values, which are kept
+ * in a separate array (the tail), so that adding a value usually copies only the tail. Accessing or replacing
+ * a value takes O(log32 n) time, which is no more than a few steps for all practical sizes.
+ * <p>
+ * Putting a key that would make the keys non-dense (or removing any key other than the last one)
+ * transparently converts the value into a SortedArrayComplex or BinaryTreeComplex, depending on its size.
+ * <p>
+ * Likewise, a prefix (as returned by headMap() or split()) is again a dense list, which shares all but the
+ * rightmost path of the trie, while any other range is rebuilt from its entries.
+ */
+public class VectorTrieComplex extends AbstractComplex {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+
+    /** the number of values, at least one (the empty value is always a BinaryTreeComplex) */
+    private final int count;
+
+    /** the number of bits to shift an index for selecting the child of the root node */
+    private final int shift;
+
+    /** the root node: an array of WIDTH child nodes or (at the lowest level) values, unused entries are null */
+    private final Object[] root;
+
+    /** the last values, between 1 and WIDTH, which are not contained in the trie */
+    private final Object[] tail;
+
+    /** the hash code, lazily computed or carried forward from the previous version, zero if not yet computed */
+    private int hash;
+
+    /** the sum of the estimated sizes of the values, computed or carried forward like the hash code, -1 if unknown */
+    private volatile long valuesSize;
+
+    private VectorTrieComplex(int count, int shift, Object[] root, Object[] tail) {
+        this(count, shift, root, tail, 0, -1);
+    }
+
+    private VectorTrieComplex(int count, int shift, Object[] root, Object[] tail, int hash, long valuesSize) {
+        this.count = count;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+        this.hash = hash;
+        this.valuesSize = valuesSize;
+    }
+
+    /**
+     * Constructs a complex value with the keys 1..count and the given values.
+     *
+     * @param values the values, the array is not modified and can be reused by the caller.
+     * @param count the number of values to use, at least one.
+     * @return the complex value, never null.
+     */
+    static VectorTrieComplex valueOf(Value[] values, int count) {
+        for(int index = 0; index < count; index++) {
+            Objects.requireNonNull(values[index]);
+        }
+        int tailOffset = tailOffset(count);
+        // Build the trie bottom up, starting with full leaves.
+        Object[][] nodes = new Object[tailOffset >>> BITS][];
+        for(int index = 0; index < nodes.length; index++) {
+            nodes[index] = Arrays.copyOfRange(values, index << BITS, (index + 1) << BITS, Object[].class);
+        }
+        int shift = BITS;
+        while(nodes.length > WIDTH) {
+            Object[][] parents = new Object[(nodes.length + MASK) >>> BITS][];
+            for(int index = 0; index < parents.length; index++) {
+                parents[index] = Arrays.copyOfRange(nodes, index << BITS, (index + 1) << BITS, Object[].class);
+            }
+            nodes = parents;
+            shift += BITS;
+        }
+        Object[] root = nodes.length == 0 ? EMPTY_NODE : Arrays.copyOf(nodes, WIDTH, Object[].class);
+        Object[] tail = Arrays.copyOfRange(values, tailOffset, count, Object[].class);
+        return new VectorTrieComplex(count, shift, root, tail);
+    }
+
+    /**
+     * Checks if the given key is the first key of a dense list, which is the number one.
+     */
+    static boolean isFirstIndex(Value key) {
+        return index(key) == 0;
+    }
+
+    /**
+     * Returns the sum of the hash codes of the entries.
+     * <p>
+     * Since the sum can be updated entry by entry, set(), append() and removeLast() pass it on to the new version
+     * if it is already known, so that hashing every version of a growing list does not take quadratic time.
+     */
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if(result == 0) {
+            for(int index = 0; index < count; index++) {
+                result += entryHash(index, valueAt(index));
+            }
+            hash = result;
+        }
+        return result;
+    }
+
+    private static int entryHash(int index, Object value) {
+        return Long.hashCode(index + 1) ^ value.hashCode(); // same as for an IntegerNumeric key
+    }
+
+    /**
+     * Returns the hash code of a new version where the given entry has been replaced, or zero if not yet known.
+     */
+    private int updateHash(int index, Object oldValue, Object newValue) {
+        if(hash == 0) {
+            return 0;
+        }
+        return hash - (oldValue == null ? 0 : entryHash(index, oldValue)) + (newValue == null ? 0 : entryHash(index, newValue));
+    }
+
+    @Override
+    void footprint(ValueFootprint footprint) {
+        footprint.count(kind(), ValueFootprint.object(2, 20));
+        footprint(footprint, shift, root);
+        footprint(footprint, 0, tail);
+    }
+
+    /**
+     * Returns the estimate of ValueFootprint.retainedSize().
+     * <p>
+     * The nodes are plain arrays, so only the sizes of the values are memoized (and carried forward like the hash
+     * code), while the sizes of the nodes follow from the number of values.
+     */
+    @Override
+    long retainedSize() {
+        long result = valuesSize;
+        if(result < 0) {
+            result = 0;
+            for(int index = 0; index < count; index++) {
+                result += ValueFootprint.retainedSize(valueAt(index));
+            }
+            valuesSize = result;
+        }
+        return ValueFootprint.object(2, 20) + nodesSize() + result;
+    }
+
+    /**
+     * Returns the shallow size of all nodes of the trie, which are arrays of WIDTH entries, and of the tail.
+     */
+    private long nodesSize() {
+        int tailOffset = tailOffset(count);
+        long nodes = 0;
+        if(tailOffset > 0) {
+            int levelNodes = tailOffset >>> BITS; // the leaves
+            nodes = levelNodes;
+            for(int level = BITS; level <= shift; level += BITS) {
+                levelNodes = (levelNodes + MASK) >>> BITS;
+                nodes += levelNodes;
+            }
+        }
+        return nodes * ValueFootprint.referenceArray(WIDTH) + ValueFootprint.referenceArray(tail.length);
+    }
+
+    /**
+     * Returns the sum of the sizes of the values of a new version where the given value has been replaced,
+     * or -1 if not yet known.
+     */
+    private long updateValuesSize(Object oldValue, Object newValue) {
+        long result = valuesSize;
+        if(result < 0) {
+            return -1;
+        }
+        return result - (oldValue == null ? 0 : ValueFootprint.retainedSize((Value) oldValue))
+                + (newValue == null ? 0 : ValueFootprint.retainedSize((Value) newValue));
+    }
+
+    @Override
+    public Iterator<Pair> iterator() {
+        return new VectorIterator(0);
+    }
+
+    @Override
+    protected Iterator<Pair> iterator(int fromIndex) {
+        return new VectorIterator(fromIndex);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public Pair entryAt(int index) {
+        if(index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        return Values.pair(Values.number(index + 1), valueAt(index));
+    }
+
+    @Override
+    public int rankOf(Value key) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        if(!key.isNumeric()) {
+            return count; // all numbers are less than any other kind of key
+        }
+        // the keys are 1 .. count, so the rank is the ceiling of the key minus one, clamped to 0 .. count
+        Numeric number = key.asNumeric();
+        if(AbstractNumeric.isLong(number)) {
+            long value = number.toLong();
+            return value <= 1 ? 0 : (int) Math.min(value - 1, count);
+        } else if(AbstractNumeric.isDouble(number)) {
+            double value = number.toDouble();
+            if(Double.isNaN(value) || value > count) {
+                return count; // NaN is greater than all other numbers
+            }
+            return (int) Math.max(0, Math.ceil(value) - 1); // including -Infinity
+        }
+        BigDecimal value = number.toBigDecimal();
+        if(value.compareTo(BigDecimal.ONE) <= 0) {
+            return 0;
+        } else if(value.compareTo(BigDecimal.valueOf(count)) > 0) {
+            return count; // checked before rounding, which would expand numbers with a huge exponent
+        } else {
+            return value.setScale(0, RoundingMode.CEILING).intValue() - 1;
+        }
+    }
+
+    @Override
+    public Optional<Value> get(Value key) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        int index = index(key);
+        return index >= 0 && index < count ? Optional.of(valueAt(index)) : Optional.empty();
+    }
+
+    @Override
+    public Complex put(Value key, Value value) {
+        if(key == null) {
+            throw new IllegalArgumentException("The key must not be null.");
+        }
+        int index = index(key);
+        if(index >= 0 && index < count) {
+            if(value != null) {
+                return set(index, value);
+            } else if(index == count - 1) {
+                return removeLast();
+            }
+        } else if(index == count) {
+            if(value != null) {
+                return append(value);
+            }
+        }
+        if(value == null && (index < 0 || index >= count)) {
+            return this; // removing a non-existing key
+        }
+        if(count < SortedArrayComplex.MAX_SIZE) {
+            return SortedArrayComplex.copyOf(this).put(key, value);
+        } else {
+            return BinaryTreeComplex.builder(this).put(key, value).build();
+        }
+    }
+
+    @Override
+    public long nextIndex() {
+        return count + 1L;
+    }
+
+    @Override
+    public Complex headMap(Value toKey) {
+        return slice(0, rankOf(toKey));
+    }
+
+    @Override
+    public Complex tailMap(Value fromKey) {
+        return slice(rankOf(fromKey), count);
+    }
+
+    @Override
+    public Complex subMap(Value fromKey, Value toKey) {
+        if(fromKey != null && toKey != null && fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("The lower bound must not be greater than the upper bound.");
+        }
+        return slice(fromKey == null ? 0 : rankOf(fromKey), toKey == null ? count : rankOf(toKey));
+    }
+
+    @Override
+    public Complex[] split(Value key) {
+        int rank = rankOf(key);
+        return new Complex[] { slice(0, rank), slice(rank, count) };
+    }
+
+    /**
+     * Compares two dense lists for ComplexDiff, skipping shared leaves.
+     */
+    static void diff(ComplexDiff diff, Reference path, VectorTrieComplex oldList, VectorTrieComplex newList) {
+        int commonCount = Math.min(oldList.count, newList.count);
+        int index = 0;
+        while(index < commonCount) {
+            Object[] oldLeaf = oldList.leafFor(index);
+            Object[] newLeaf = newList.leafFor(index);
+            int end = Math.min(commonCount, (index | MASK) + 1);
+            if(oldLeaf != newLeaf) {
+                for(; index < end; index++) {
+                    diff.entry(path, Values.number(index + 1), (Value) oldLeaf[index & MASK], (Value) newLeaf[index & MASK]);
+                }
+            }
+            index = end;
+        }
+        for(index = commonCount; index < oldList.count; index++) {
+            diff.entry(path, Values.number(index + 1), oldList.valueAt(index), null);
+        }
+        for(index = commonCount; index < newList.count; index++) {
+            diff.entry(path, Values.number(index + 1), null, newList.valueAt(index));
+        }
+    }
+
+    /**
+     * Returns the zero-based index for the given key, or -1 if it is not a positive integer.
+     */
+    private static int index(Value key) {
+        if(key.isNumeric() && key.asNumeric().isInteger()) {
+            int number = key.asNumeric().toInteger();
+            return number >= 1 ? number - 1 : -1;
+        } else {
+            return -1;
+        }
+    }
+
+    private static void footprint(ValueFootprint footprint, int level, Object[] node) {
+        if(node == EMPTY_NODE || !footprint.visit(node)) {
+            return; // shared with other versions, already counted
+        }
+        footprint.count(Kind.COMPLEX, ValueFootprint.referenceArray(node.length));
+        for(Object child : node) {
+            if(child == null) {
+                break; // unused entries are at the end
+            } else if(level == 0) {
+                footprint.value((Value) child);
+            } else {
+                footprint(footprint, level - BITS, (Object[]) child);
+            }
+        }
+    }
+
+    /**
+     * Returns the entries at the positions from fromIndex (inclusive) to toIndex (exclusive).
+     * <p>
+     * A prefix takes O(log32 n) time, other ranges are rebuilt in time linear in their size.
+     */
+    private Complex slice(int fromIndex, int toIndex) {
+        if(fromIndex >= toIndex) {
+            return BinaryTreeComplex.EMPTY;
+        } else if(fromIndex == 0 && toIndex == count) {
+            return this;
+        } else if(fromIndex == 0) {
+            return take(toIndex);
+        }
+        List<Pair> pairs = new ArrayList<>(toIndex - fromIndex);
+        Iterator<Pair> iterator = iterator(fromIndex);
+        while(pairs.size() < toIndex - fromIndex) {
+            pairs.add(iterator.next());
+        }
+        return Values.complex(pairs);
+    }
+
+    /**
+     * Returns the first newCount values, sharing the leaves of the trie and all nodes left of its new right edge.
+     */
+    private VectorTrieComplex take(int newCount) {
+        int newTailOffset = tailOffset(newCount);
+        Object[] newTail = Arrays.copyOf(leafFor(newCount - 1), newCount - newTailOffset);
+        if(newTailOffset == 0) {
+            return new VectorTrieComplex(newCount, BITS, EMPTY_NODE, newTail);
+        }
+        Object[] newRoot = take(shift, root, newTailOffset - 1);
+        int newShift = shift;
+        while(newShift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0]; // the root has a single child: remove a level
+            newShift -= BITS;
+        }
+        return new VectorTrieComplex(newCount, newShift, newRoot, newTail);
+    }
+
+    private static Object[] take(int level, Object[] node, int lastIndex) {
+        if(((lastIndex + 1) & ((1 << (level + BITS)) - 1)) == 0) {
+            return node; // the last index is the last one of this node, which can be shared
+        }
+        int childIndex = (lastIndex >>> level) & MASK;
+        Object[] result = new Object[WIDTH];
+        System.arraycopy(node, 0, result, 0, childIndex + 1);
+        if(level > BITS) {
+            result[childIndex] = take(level - BITS, (Object[]) node[childIndex], lastIndex);
+        }
+        return result;
+    }
+
+    private static int tailOffset(int count) {
+        return count == 0 ? 0 : ((count - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if(index >= tailOffset(count)) {
+            return tail;
+        }
+        Object[] node = root;
+        for(int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private Value valueAt(int index) {
+        return (Value) leafFor(index)[index & MASK];
+    }
+
+    private VectorTrieComplex set(int index, Value value) {
+        if(index >= tailOffset(count)) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = value;
+            return new VectorTrieComplex(count, shift, root, newTail, updateHash(index, tail[index & MASK], value),
+                    updateValuesSize(tail[index & MASK], value));
+        } else {
+            Value oldValue = valueAt(index);
+            return new VectorTrieComplex(count, shift, set(shift, root, index, value), tail, updateHash(index, oldValue, value),
+                    updateValuesSize(oldValue, value));
+        }
+    }
+
+    private static Object[] set(int level, Object[] node, int index, Value value) {
+        Object[] result = node.clone();
+        if(level == 0) {
+            result[index & MASK] = value;
+        } else {
+            int childIndex = (index >>> level) & MASK;
+            result[childIndex] = set(level - BITS, (Object[]) node[childIndex], index, value);
+        }
+        return result;
+    }
+
+    private VectorTrieComplex append(Value value) {
+        if(count - tailOffset(count) < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = value;
+            return new VectorTrieComplex(count + 1, shift, root, newTail, updateHash(count, null, value),
+                    updateValuesSize(null, value));
+        }
+        // The tail is full: move it into the trie and start a new one.
+        Object[] newRoot;
+        int newShift = shift;
+        if((count >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH]; // the trie is full: add a level
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root);
+        }
+        return new VectorTrieComplex(count + 1, newShift, newRoot, new Object[] { value }, updateHash(count, null, value),
+                updateValuesSize(null, value));
+    }
+
+    private Object[] pushTail(int level, Object[] node) {
+        int childIndex = ((count - 1) >>> level) & MASK;
+        Object[] result = node.clone();
+        if(level == BITS) {
+            result[childIndex] = tail;
+        } else {
+            Object[] child = (Object[]) node[childIndex];
+            result[childIndex] = child != null ? pushTail(level - BITS, child) : newPath(level - BITS, tail);
+        }
+        return result;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if(level == 0) {
+            return node;
+        }
+        Object[] result = new Object[WIDTH];
+        result[0] = newPath(level - BITS, node);
+        return result;
+    }
+
+    private Complex removeLast() {
+        if(count == 1) {
+            return BinaryTreeComplex.EMPTY;
+        }
+        if(count - tailOffset(count) > 1) {
+            return new VectorTrieComplex(count - 1, shift, root, Arrays.copyOf(tail, tail.length - 1),
+                    updateHash(count - 1, tail[tail.length - 1], null), updateValuesSize(tail[tail.length - 1], null));
+        }
+        // The tail becomes empty: take the last leaf of the trie as the new tail.
+        Object[] newTail = leafFor(count - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if(newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if(shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0]; // the root has a single child: remove a level
+            newShift -= BITS;
+        }
+        return new VectorTrieComplex(count - 1, newShift, newRoot, newTail, updateHash(count - 1, tail[0], null),
+                updateValuesSize(tail[0], null));
+    }
+
+    private Object[] popTail(int level, Object[] node) {
+        int childIndex = ((count - 2) >>> level) & MASK;
+        if(level > BITS) {
+            Object[] newChild = popTail(level - BITS, (Object[]) node[childIndex]);
+            if(newChild == null && childIndex == 0) {
+                return null;
+            }
+            Object[] result = node.clone();
+            result[childIndex] = newChild;
+            return result;
+        } else if(childIndex == 0) {
+            return null;
+        } else {
+            Object[] result = node.clone();
+            result[childIndex] = null;
+            return result;
+        }
+    }
+
+    private class VectorIterator implements Iterator<Pair> {
+
+        private int index;
+        private Object[] leaf;
+
+        private VectorIterator(int fromIndex) {
+            this.index = fromIndex;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        @Override
+        public Pair next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if(leaf == null || (index & MASK) == 0) {
+                leaf = leafFor(index); // advance to the next leaf
+            }
+            Value value = (Value) leaf[index & MASK];
+            index++;
+            return Values.pair(Values.number(index), value);
+        }
+    }
+}
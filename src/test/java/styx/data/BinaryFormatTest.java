@@ -0,0 +1,122 @@
+package styx.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static styx.data.AssertUtils.assertException;
+import static styx.data.Values.binary;
+import static styx.data.Values.complex;
+import static styx.data.Values.generate;
+import static styx.data.Values.generateBinary;
+import static styx.data.Values.list;
+import static styx.data.Values.number;
+import static styx.data.Values.pair;
+import static styx.data.Values.parseBinary;
+import static styx.data.Values.reference;
+import static styx.data.Values.root;
+import static styx.data.Values.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BinaryFormatTest {
+
+    @Test
+    public void generateBinary_scalars_success() {
+        assertArrayEquals(new byte[] { 1, 0 }, generateBinary(number(0)));
+        assertArrayEquals(new byte[] { 1, 1 }, generateBinary(number(-1)));
+        assertArrayEquals(new byte[] { 1, (byte) 0x80, 0x01 }, generateBinary(number(64)));
+        assertArrayEquals(new byte[] { 4, 3, 'a', 'b', 'c' }, generateBinary(text("abc")));
+        assertArrayEquals(new byte[] { 5, 2, 1, 2 }, generateBinary(binary(new byte[] { 1, 2 })));
+        assertArrayEquals(new byte[] { 6, 1, 1, 2 }, generateBinary(reference(number(1))));
+        assertArrayEquals(new byte[] { 7, 1, 1, 2, 4, 1, 'x' }, generateBinary(list(text("x"))));
+    }
+
+    @Test
+    public void roundTrip_allKinds_same() {
+        Value[] values = {
+                number(0), number(1), number(-1), number(Long.MAX_VALUE), number(Long.MIN_VALUE),
+                number(0.1), number(-1234.5678), number(1E300),
+                number(new BigDecimal("123456789012345678901234567890.123456789")), number(new BigDecimal("1E-500")),
+                text(), text("abc"), text("äöü € 😀 \"}{"), text(new String(new char[20000]).replace('\0', 'é')),
+                binary(), binary(new byte[] { 0, -1, 127, -128 }), binary(new byte[100000]),
+                Values.binaryView(ByteBuffer.allocateDirect(10).asReadOnlyBuffer()),
+                root(), reference(text("a"), number(1), list(text("b"))),
+                Values.empty(), list(text("a"), text("b")),
+                complex(pair(number(1.5), text("x")), pair(text("key"), complex(text("nested"), binary(new byte[] { 1 })))),
+                complex(complex(text("complex"), text("key")), text("value")) };
+        for(Value value : values) {
+            byte[] bytes = generateBinary(value);
+            assertEquals(value, parseBinary(bytes));
+            assertEquals(value, parseBinary(new ByteArrayInputStream(bytes)));
+        }
+    }
+
+    @Test
+    public void generateBinary_utf8Text_sameAsString() {
+        for(String string : new String[] { "abc", "äöü € 😀", new String(new char[20000]).replace('\0', 'é') }) {
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            Value value = list(text(string), text(utf8, 0, utf8.length), text(utf8, 0, utf8.length));
+            byte[] bytes = generateBinary(value);
+            assertArrayEquals(generateBinary(list(text(string), text(string), text(string))), bytes);
+            assertEquals(value, parseBinary(bytes));
+        }
+    }
+
+    @Test
+    public void roundTrip_large_same() throws IOException {
+        Random random = new Random(42);
+        List<Value> list = new ArrayList<>();
+        for(int i = 0; i < 10000; i++) {
+            list.add(complex(pair(text("id"), number(random.nextLong())), pair(text("name"), text("name" + i)),
+                    pair(text("data"), binary(new byte[random.nextInt(20)])), pair(text("ratio"), number(random.nextDouble()))));
+        }
+        Value value = list(list);
+        Path path = Paths.get("target/test/BinaryFormatTest/large.bin");
+        Files.createDirectories(path.getParent());
+        generateBinary(value, path);
+        assertEquals(value, parseBinary(path));
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        generateBinary(value, stream);
+        assertArrayEquals(stream.toByteArray(), Files.readAllBytes(path));
+        assertTrue(stream.size() < generate(value).length());
+    }
+
+    @Test
+    public void parseBinary_invalid_exception() {
+        assertException(ParserException.class, "Unexpected EOF.", () -> parseBinary(new byte[0]));
+        assertException(ParserException.class, "Unexpected EOF.", () -> parseBinary(new byte[] { 4, 3, 'a' }));
+        assertException(ParserException.class, "Unexpected EOF.", () -> parseBinary(new ByteArrayInputStream(new byte[] { 7, 2, 1, 2 })));
+        assertException(ParserException.class, "invalid tag 9.", () -> parseBinary(new byte[] { 9 }));
+        assertException(ParserException.class, "invalid UTF-8.", () -> parseBinary(new byte[] { 4, 2, (byte) 0xC0, (byte) 0x80 }));
+        assertException(ParserException.class, "invalid length.", () -> parseBinary(new byte[] { 4, -1, -1, -1, -1, -1, -1, -1, -1, 1 }));
+        assertException(ParserException.class, "keys not in ascending order.", () -> parseBinary(new byte[] { 7, 2, 1, 4, 1, 0, 1, 2, 1, 0 }));
+        assertException(ParserException.class, "unexpected data after the value.", () -> parseBinary(new byte[] { 1, 0, 1 }));
+    }
+
+    @Test
+    public void parseBinary_hostile_exception() {
+        byte[] hugeText = { 4, (byte) 0x80, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, 0x07 };
+        assertException(ParserException.class, "Unexpected EOF.", () -> parseBinary(new ByteArrayInputStream(hugeText)));
+        byte[] deepReference = new byte[200000];
+        for(int i = 0; i < deepReference.length; i += 2) {
+            deepReference[i] = 6;
+            deepReference[i + 1] = 1;
+        }
+        assertException(ParserException.class, "nesting too deep.", () -> parseBinary(deepReference));
+        assertException(ParserException.class, "nesting too deep.", () -> parseBinary(new ByteArrayInputStream(deepReference)));
+    }
+}
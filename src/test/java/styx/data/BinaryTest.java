@@ -4,8 +4,13 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static styx.data.AssertUtils.assertException;
 import static styx.data.Values.binary;
+import static styx.data.Values.binaryView;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.junit.Test;
 
@@ -60,4 +65,69 @@ public class BinaryTest {
         assertEquals(0x12, value.byteAt(1));
     }
 
+    @Test
+    public void binaryView_buffer_success() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(6);
+        buffer.put(new byte[] { 0x77, 0x00, 0x12, (byte) 0xDE, (byte) 0xAD, 0x77 });
+        buffer.position(1).limit(5);
+        Binary value = binaryView(buffer);
+        assertEquals(1, buffer.position());
+        assertEquals(4, value.byteCount());
+        assertEquals(0x12, value.byteAt(1));
+        assertException(IndexOutOfBoundsException.class, () -> value.byteAt(5));
+        assertArrayEquals(new byte[] { 0x00, 0x12, (byte) 0xDE, (byte) 0xAD }, value.toByteArray());
+        assertEquals(binary(new byte[] { 0x00, 0x12, (byte) 0xDE, (byte) 0xAD }), value);
+        assertEquals(binary(new byte[] { 0x00, 0x12, (byte) 0xDE, (byte) 0xAD }).hashCode(), value.hashCode());
+        assertSame(binary(), binaryView(ByteBuffer.allocate(0)));
+        assertSame(binary(), binaryView(null));
+    }
+
+    @Test
+    public void slice_valid_success() {
+        byte[] bytes = new byte[] { 0x00, 0x12, (byte) 0xDE, (byte) 0xAD };
+        for(Binary value : new Binary[] { binary(bytes), binaryView(ByteBuffer.wrap(bytes)) }) {
+            assertEquals(binary(new byte[] { 0x12, (byte) 0xDE }), value.slice(1, 3));
+            assertEquals(binary(new byte[] { (byte) 0xDE }), value.slice(1, 3).slice(1, 2));
+            assertSame(value, value.slice(0, 4));
+            assertSame(binary(), value.slice(2, 2));
+            assertException(IndexOutOfBoundsException.class, () -> value.slice(3, 2));
+            assertException(IndexOutOfBoundsException.class, () -> value.slice(0, 5));
+        }
+    }
+
+    @Test
+    public void asReadOnlyBuffer_valid_success() {
+        Binary value = binary(new byte[] { 0x00, 0x12, (byte) 0xDE, (byte) 0xAD });
+        ByteBuffer buffer = value.asReadOnlyBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(4, buffer.remaining());
+        assertEquals(0x12, buffer.get(1));
+        assertEquals(binary(new byte[] { (byte) 0xDE, (byte) 0xAD }).asReadOnlyBuffer(), value.slice(2, 4).asReadOnlyBuffer());
+    }
+
+    @Test
+    public void compareTo_mixed_unsigned() {
+        byte[] bytes1 = new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+        byte[] bytes2 = new byte[] { 0, 1, 2, 3, 4, 5, 6, (byte) 0xFF, 8 };
+        assertEquals(-1, Integer.signum(binaryView(ByteBuffer.wrap(bytes1)).compareTo(binary(bytes2))));
+        assertEquals(1, Integer.signum(binary(bytes2).compareTo(binaryView(ByteBuffer.wrap(bytes1)))));
+        assertEquals(1, Integer.signum(binaryView(ByteBuffer.wrap(bytes1)).compareTo(binary(bytes1).slice(0, 9))));
+        assertEquals(0, binaryView(ByteBuffer.wrap(bytes1)).compareTo(binary(bytes1)));
+    }
+
+    @Test
+    public void compareTo_arrays_unsigned() {
+        for(int length = 0; length <= 20; length++) {
+            for(int diff = 0; diff < length; diff++) {
+                byte[] bytes1 = new byte[length];
+                byte[] bytes2 = new byte[length];
+                bytes2[diff] = (byte) 0x80;
+                assertEquals(-1, Integer.signum(binary(bytes1).compareTo(binary(bytes2))));
+                assertEquals(1, Integer.signum(binary(bytes2).compareTo(binary(bytes1))));
+                assertEquals(1, Integer.signum(binary(bytes2).compareTo(binary(Arrays.copyOf(bytes2, diff)))));
+                assertEquals(-1, Integer.signum(binary(bytes1).compareTo(binary(Arrays.copyOf(bytes1, length + 1)))));
+                assertEquals(0, binary(bytes2).compareTo(binary(bytes2.clone())));
+            }
+        }
+    }
 }
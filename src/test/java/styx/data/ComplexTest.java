@@ -15,6 +15,8 @@ import static styx.data.Values.pair;
 import static styx.data.Values.text;
 
 import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -22,13 +24,22 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.Random;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.junit.Ignore;
 import org.junit.Test;
 
+import styx.data.impl.value.BTreeComplex;
+import styx.data.impl.value.BinaryTreeComplex;
+import styx.data.impl.value.SortedArrayComplex;
+import styx.data.impl.value.VectorTrieComplex;
+
 public class ComplexTest {
 
     @Test
@@ -101,6 +112,26 @@ public class ComplexTest {
         assertSame(value, empty());
     }
 
+    @Test
+    public void complex_pairsWithoutValue_removed() {
+        for(int size : new int[] { 3, 100, 5000 }) {
+            List<Pair> pairs = new ArrayList<>();
+            for(int i = 0; i < size; i++) {
+                pairs.add(pair(text("k" + i), number(i)));
+            }
+            pairs.add(customPair(text("k1"), null));
+            pairs.add(customPair(text("none"), null));
+            Complex value = complex(pairs);
+            assertSize(size - 1, value);
+            assertFalse(value.get(text("k1")).isPresent());
+            assertFalse(value.get(text("none")).isPresent());
+            for(Pair pair : value) {
+                assertNotNull(pair.value());
+            }
+            assertEquals(value, complex().putAll(pairs));
+        }
+    }
+
     @Test
     public void complex_mapOfOne_success() {
         Complex value = complex(Collections.singletonMap(text("A"), text("foo")));
@@ -256,7 +287,7 @@ public class ComplexTest {
 
     @Test
     public void put_manyAscending_balanced() {
-        List<Pair> list = IntStream.rangeClosed(1, 1000).
+        List<Pair> list = IntStream.range(0, 1000). // not starting with 1, which would be a dense list
                 mapToObj(i -> pair(number(i), text("Val" + i))).
                 collect(Collectors.toList());
         Complex value = complex(list);
@@ -292,7 +323,7 @@ public class ComplexTest {
                 collect(Collectors.toList());
         Complex value = complex(list);
         assertEqualPairs(list, value);
-        assertEquals(12, height(value));
+        assertEquals(10, height(value)); // built bottom up after sorting
 
         for(Pair p : list) {
             value = value.put(p.key(), null);
@@ -300,6 +331,667 @@ public class ComplexTest {
         assertEquals(empty(), value);
     }
 
+    @Test
+    public void complex_unsorted_lastWins() {
+        Complex value = complex(pair(text("B"), text("foo")), pair(text("A"), text("bar")), pair(text("B"), text("baz")));
+        assertSize(2, value);
+        assertEquals(text("bar"), value.get(text("A")).get());
+        assertEquals(text("baz"), value.get(text("B")).get());
+    }
+
+    @Test
+    public void complex_sortedMap_balanced() {
+        SortedMap<Value, Value> map = new TreeMap<>();
+        IntStream.rangeClosed(1, 1000).forEach(i -> map.put(text("Key" + i), number(i)));
+        map.put(text("Null"), null);
+        Complex value = complex(map);
+        assertSize(1000, value);
+        assertEquals(10, height(value));
+        assertEquals(number(123), value.get(text("Key123")).get());
+        assertFalse(value.get(text("Null")).isPresent());
+    }
+
+    @Test
+    public void complex_nullKey_exception() {
+        assertException(IllegalArgumentException.class, () -> complex(Collections.singletonMap(null, text("foo"))));
+    }
+
+    @Test
+    public void list_many_vectorTrie() {
+        Complex value = list(IntStream.rangeClosed(1, 1023).mapToObj(i -> text("Val" + i)).collect(Collectors.toList()));
+        assertTrue(value instanceof VectorTrieComplex);
+        assertEquals(text("Val1"), value.get(number(1)).get());
+        assertEquals(text("Val1023"), value.get(number(1023)).get());
+        assertFalse(value.get(number(0)).isPresent());
+        assertFalse(value.get(number(1024)).isPresent());
+        assertFalse(value.get(number(1.5)).isPresent());
+        assertFalse(value.get(text("1")).isPresent());
+    }
+
+    @Test
+    public void list_huge_success() {
+        Complex value = list(IntStream.rangeClosed(1, 40000).mapToObj(i -> number(i * 2)).collect(Collectors.toList()));
+        for(int i = 1; i <= 40000; i++) {
+            assertEquals(number(i * 2), value.get(number(i)).get());
+        }
+        Complex modified = value.add(number(0)).put(number(20000), number(1));
+        assertEquals(40001, modified.size());
+        assertEquals(number(1), modified.get(number(20000)).get());
+        assertEquals(number(0), modified.get(number(40001)).get());
+        assertEquals(40000, modified.values().filter(v -> v.asNumeric().toInteger() % 2 == 0).count());
+    }
+
+    @Test
+    public void list_addAndRemoveLast_sameAsTree() {
+        Random random = new Random(42);
+        Complex value = empty();
+        SortedMap<Value, Value> expected = new TreeMap<>();
+        for(int i = 0; i < 3000; i++) {
+            if(random.nextInt(4) == 0 && !expected.isEmpty()) {
+                Value last = expected.lastKey();
+                value = value.put(last, null);
+                expected.remove(last);
+            } else {
+                value = value.add(text("Val" + i));
+                expected.put(number(expected.size() + 1), text("Val" + i));
+            }
+            if(i % 100 == 0 || i > 2900) {
+                assertEquals(expected.size(), value.size());
+                assertEquals(complex(expected), value);
+            }
+        }
+        assertTrue(value instanceof VectorTrieComplex);
+        assertEqualPairs(complex(expected).allEntries(), value);
+        assertEquals(complex(expected).hashCode(), value.hashCode());
+        for(Value key : expected.keySet()) {
+            assertEquals(expected.get(key), value.get(key).get());
+            value = value.put(key, text("New"));
+        }
+        assertEquals(expected.size(), value.size());
+        assertEquals(text("New"), value.entryAt(value.size() - 1).value());
+    }
+
+    @Test
+    public void list_nonDensePut_tree() {
+        Complex list = list(IntStream.rangeClosed(1, 100).mapToObj(i -> text("Val" + i)).collect(Collectors.toList()));
+        Complex value = list.put(number(50), null).put(text("key"), text("value"));
+        assertFalse(value instanceof VectorTrieComplex);
+        assertEquals(100, value.size());
+        assertFalse(value.get(number(50)).isPresent());
+        assertEquals(text("Val51"), value.get(number(51)).get());
+        assertEquals(101, value.nextIndex());
+        assertEquals(100, list.size());
+        assertEquals(list, list.put(number(0), null).put(number(101), null));
+    }
+
+    @Test
+    public void list_compare_sameAsTree() {
+        Complex list = list(text("Val1"), text("Val2"), text("Val3"));
+        Complex tree = BinaryTreeComplex.builder().put(number(1), text("Val1")).put(number(2), text("Val2")).put(number(3), text("Val3")).build();
+        assertTrue(tree instanceof BinaryTreeComplex);
+        assertEquals(tree, list);
+        assertEquals(list, tree);
+        assertEquals(tree.hashCode(), list.hashCode());
+        assertEquals(0, list.compareTo(tree));
+        assertTrue(list.compareTo(tree.put(number(3), text("Val4"))) < 0);
+        assertEquals(2, list.rankOf(number(2.5)));
+        assertEquals(3, list.rankOf(text("a")));
+        assertEquals(1, list.rankOf(number(2)));
+        assertEquals(0, list.rankOf(number(-1)));
+    }
+
+    @Test
+    public void rankOf_extremeKeys_sameAsTree() {
+        Complex list = list(text("Val1"), text("Val2"), text("Val3"));
+        Complex tree = BinaryTreeComplex.builder().put(number(1), text("Val1")).put(number(2), text("Val2")).put(number(3), text("Val3")).build();
+        assertTrue(list instanceof VectorTrieComplex);
+        Value[] keys = { number(Double.NaN), number(Double.POSITIVE_INFINITY), number(Double.NEGATIVE_INFINITY),
+                number(Long.MIN_VALUE), number(Long.MAX_VALUE), number(2.000001), number(new BigDecimal("1E99999999")),
+                number(new BigDecimal("-1E99999999")), number(new BigDecimal("2.0000000000000000000001")) };
+        for(Value key : keys) {
+            assertEquals(key.toString(), tree.rankOf(key), list.rankOf(key));
+        }
+        assertEquals(list, list.headMap(number(Double.POSITIVE_INFINITY)));
+        assertEquals(empty(), list.tailMap(number(Double.NaN)));
+    }
+
+    @Test
+    public void size_many_success() {
+        assertEquals(0, empty().size());
+        assertEquals(3, complex(pair(text("k1"), text("v1")), pair(text("k2"), text("v2")), pair(text("k3"), text("v3"))).size());
+        Complex value = list(IntStream.rangeClosed(1, 1000).mapToObj(i -> text("Val" + i)).collect(Collectors.toList()));
+        assertEquals(1000, value.size());
+        assertEquals(999, value.put(number(500), null).size());
+        assertEquals(1000, value.put(number(500), text("New")).size());
+    }
+
+    @Test
+    public void entryAt_many_success() {
+        Complex value = complex();
+        for(int i = 999; i >= 0; i--) {
+            value = value.put(text(String.format("Key%03d", i)), number(i));
+        }
+        for(int i = 0; i < 1000; i++) {
+            assertEquals(number(i), value.entryAt(i).value());
+            assertEquals(i, value.rankOf(value.entryAt(i).key()));
+        }
+    }
+
+    @Test
+    public void entryAt_invalid_exception() {
+        Complex value = list(text("Val1"), text("Val2"));
+        assertException(IndexOutOfBoundsException.class, () -> value.entryAt(-1));
+        assertException(IndexOutOfBoundsException.class, () -> value.entryAt(2));
+        assertException(IndexOutOfBoundsException.class, () -> empty().entryAt(0));
+    }
+
+    @Test
+    public void rankOf_missing_insertionPoint() {
+        Complex value = complex(pair(number(10), text("v1")), pair(number(20), text("v2")), pair(text("k3"), text("v3")));
+        assertEquals(0, value.rankOf(number(5)));
+        assertEquals(1, value.rankOf(number(15)));
+        assertEquals(2, value.rankOf(number(25)));
+        assertEquals(2, value.rankOf(text("a")));
+        assertEquals(3, value.rankOf(text("z")));
+        assertEquals(0, empty().rankOf(text("z")));
+    }
+
+    @Test
+    public void nextIndex_variousKeys_success() {
+        assertEquals(1, empty().nextIndex());
+        assertEquals(3, list(text("Val1"), text("Val2")).nextIndex());
+        assertEquals(1, complex(pair(text("k1"), text("v1"))).nextIndex());
+        assertEquals(1, complex(pair(number(-7), text("v1")), pair(number(0.5), text("v2"))).nextIndex());
+        assertEquals(8, complex(pair(number(7.5), text("v1")), pair(text("k2"), text("v2"))).nextIndex());
+        assertEquals(10000000001L, complex(pair(number(10000000000L), text("v1"))).nextIndex());
+    }
+
+    @Test
+    public void nextIndex_extremeKeys_success() {
+        assertEquals(1, complex(pair(number(Double.NEGATIVE_INFINITY), text("v1"))).nextIndex());
+        assertEquals(1, complex(pair(number(new BigDecimal("-1E99999999")), text("v1"))).nextIndex());
+        assertEquals(Long.MAX_VALUE, complex(pair(number(Long.MAX_VALUE - 1), text("v1"))).nextIndex());
+        assertException(ArithmeticException.class, "cannot be represented by a long", () -> complex(pair(number(Long.MAX_VALUE), text("v1"))).nextIndex());
+        assertException(ArithmeticException.class, "cannot be represented by a long", () -> complex(pair(number(Double.NaN), text("v1"))).nextIndex());
+        assertException(ArithmeticException.class, "cannot be represented by a long", () -> complex(pair(number(Double.POSITIVE_INFINITY), text("v1"))).nextIndex());
+        assertException(ArithmeticException.class, "cannot be represented by a long", () -> Values.parse("{1E99999999: a}").asComplex().add(text("b")));
+    }
+
+    @Test
+    public void add_nonEmpty_appended() {
+        Complex value = list(text("Val1"), text("Val2"));
+        assertEquals(list(text("Val1"), text("Val2"), text("Val3")), value.add(text("Val3")));
+        assertEquals(list(text("Val1"), text("Val2"), text("Val3"), text("Val4")), value.addAll(text("Val3"), text("Val4")));
+        assertEquals(complex(pair(text("k1"), text("v1")), pair(number(1), text("Val1"))), complex(pair(text("k1"), text("v1"))).add(text("Val1")));
+    }
+
+    @Test
+    public void complex_small_sortedArray() {
+        Complex value = complex(pair(text("k2"), text("v2")), pair(text("k1"), text("v1")));
+        assertTrue(value instanceof SortedArrayComplex);
+        assertTrue(complex(text("k1"), text("v1")) instanceof SortedArrayComplex);
+        assertEqualPairs(Arrays.asList(pair(text("k1"), text("v1")), pair(text("k2"), text("v2"))), value);
+        assertEquals(text("v2"), value.get(text("k2")).get());
+        assertFalse(value.get(text("k3")).isPresent());
+        assertEquals(1, value.rankOf(text("k2")));
+        assertEquals(1, value.nextIndex());
+        assertSame(empty(), value.put(text("k1"), null).put(text("k2"), null));
+        assertSame(value, value.put(text("k3"), null));
+    }
+
+    @Test
+    public void complex_growAndShrink_sameAsTree() {
+        Random random = new Random(42);
+        Complex value = empty();
+        SortedMap<Value, Value> expected = new TreeMap<>();
+        for(int i = 0; i < 2000; i++) {
+            Value key = text("Key" + random.nextInt(24));
+            Value val = random.nextInt(3) == 0 ? null : number(i);
+            value = value.put(key, val);
+            if(val == null) {
+                expected.remove(key);
+            } else {
+                expected.put(key, val);
+            }
+            assertEquals(expected.size(), value.size());
+            assertEqualPairs(expected.entrySet().stream().map(e -> pair(e.getKey(), e.getValue())).collect(Collectors.toList()), value);
+        }
+        Complex tree = BinaryTreeComplex.builder(complex(expected)).build();
+        assertEquals(tree, value);
+        assertEquals(tree.hashCode(), value.hashCode());
+    }
+
+    @Test
+    public void setOperations_random_sameAsMap() {
+        Random random = new Random(42);
+        for(int round = 0; round < 50; round++) {
+            SortedMap<Value, Value> mapA = randomMap(random, random.nextInt(round < 25 ? 30 : 3000));
+            SortedMap<Value, Value> mapB = randomMap(random, random.nextInt(round < 25 ? 30 : 300));
+            Complex a = complex(mapA);
+            Complex b = complex(mapB);
+
+            SortedMap<Value, Value> union = new TreeMap<>(mapA);
+            mapB.forEach((k, v) -> union.merge(k, v, (x, y) -> x.compareTo(y) < 0 ? null : number(x.asNumeric().toInteger() + y.asNumeric().toInteger())));
+            Complex actualUnion = a.merge(b, (x, y) -> x.compareTo(y) < 0 ? null : number(x.asNumeric().toInteger() + y.asNumeric().toInteger()));
+            assertEquals(complex(union), actualUnion);
+
+            SortedMap<Value, Value> intersection = new TreeMap<>(mapA);
+            intersection.keySet().retainAll(mapB.keySet());
+            assertEquals(complex(intersection), a.intersect(b));
+
+            SortedMap<Value, Value> difference = new TreeMap<>(mapA);
+            difference.keySet().removeAll(mapB.keySet());
+            assertEquals(complex(difference), a.difference(b));
+
+            Value splitKey = number(random.nextInt(1000));
+            Complex[] split = a.split(splitKey);
+            assertEquals(complex(mapA.headMap(splitKey)), split[0]);
+            assertEquals(complex(mapA.tailMap(splitKey)), split[1]);
+            assertEquals(a, split[0].concat(split[1]));
+
+            for(Complex value : Arrays.asList(actualUnion, a.intersect(b), a.difference(b), split[0], split[1])) {
+                assertTrue(!(value instanceof BinaryTreeComplex) || height(value) <= 1 + 1.45 * Math.log(value.size() + 2) / Math.log(2));
+            }
+        }
+    }
+
+    @Test
+    public void merge_small_shared() {
+        Complex big = complex(IntStream.range(0, 1000).mapToObj(i -> pair(number(i), text("Val" + i))).collect(Collectors.toList()));
+        assertSame(big, big.merge(empty(), (x, y) -> y));
+        assertSame(big, big.merge(complex(number(500), text("Val500")), (x, y) -> x));
+        assertSame(big, big.intersect(big));
+        assertSame(big, big.difference(complex(number(-1), text("x"))));
+        Complex merged = big.merge(complex(number(2000), text("New")), (x, y) -> y);
+        assertEquals(1001, merged.size());
+        assertEquals(text("New"), merged.get(number(2000)).get());
+        assertEquals(text("Val0"), merged.get(number(0)).get());
+    }
+
+    @Test
+    public void concat_overlapping_exception() {
+        Complex a = complex(pair(number(0), text("a")), pair(number(5), text("b")));
+        Complex b = complex(pair(number(5), text("c")));
+        assertException(IllegalArgumentException.class, () -> a.concat(b));
+        assertEquals(a, a.concat(empty()));
+        assertEquals(a, empty().concat(a));
+        assertEquals(list(text("a"), text("b"), text("c")), list(text("a")).concat(complex(pair(number(2), text("b")), pair(number(3), text("c")))));
+    }
+
+    @Test
+    public void ranges_random_sameAsMap() {
+        Random random = new Random(42);
+        for(int size : new int[] { 0, 1, 10, 100, 1000 }) {
+            SortedMap<Value, Value> map = randomMap(random, size);
+            List<Complex> values = Arrays.asList(complex(map), BinaryTreeComplex.builder(complex(map)).build());
+            for(Complex value : values) {
+                assertEquals(map.isEmpty() ? null : entry(map.firstKey(), map), entry(value.first()));
+                assertEquals(map.isEmpty() ? null : entry(map.lastKey(), map), entry(value.last()));
+                List<Pair> descending = value.descendingEntries().collect(Collectors.toList());
+                Collections.reverse(descending);
+                assertEqualPairs(descending, value);
+                for(int i = 0; i < 20; i++) {
+                    Value fromKey = number(random.nextInt(1100) - 50);
+                    Value toKey = number(fromKey.asNumeric().toInteger() + random.nextInt(300));
+                    assertEquals(complex(map.subMap(fromKey, toKey)), value.subMap(fromKey, toKey));
+                    assertEquals(complex(map.headMap(toKey)), value.headMap(toKey));
+                    assertEquals(complex(map.tailMap(fromKey)), value.tailMap(fromKey));
+                    SortedMap<Value, Value> head = map.headMap(number(fromKey.asNumeric().toInteger() + 1));
+                    SortedMap<Value, Value> tail = map.tailMap(fromKey);
+                    assertEquals(head.isEmpty() ? null : entry(head.lastKey(), map), entry(value.floor(fromKey)));
+                    assertEquals(tail.isEmpty() ? null : entry(tail.firstKey(), map), entry(value.ceiling(fromKey)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void ranges_list_success() {
+        Complex value = list(text("Val1"), text("Val2"), text("Val3"), text("Val4"));
+        assertEquals(complex(pair(number(2), text("Val2")), pair(number(3), text("Val3"))), value.subMap(number(2), number(4)));
+        assertEquals(list(text("Val1"), text("Val2")), value.headMap(number(2.5)));
+        assertEquals(value, value.subMap(null, null));
+        assertEquals(empty(), value.subMap(number(3), number(3)));
+        assertEquals(complex(number(2), text("Val2")), entry(value.floor(number(2.5))));
+        assertEquals(complex(number(3), text("Val3")), entry(value.ceiling(number(2.5))));
+        assertEquals(Arrays.asList(text("Val4"), text("Val3"), text("Val2"), text("Val1")),
+                value.descendingEntries().map(Pair::value).collect(Collectors.toList()));
+        assertException(IllegalArgumentException.class, () -> value.subMap(number(3), number(2)));
+    }
+
+    @Test
+    public void ranges_largeList_sameAsList() {
+        Random random = new Random(42);
+        List<Value> values = IntStream.range(0, 40000).mapToObj(i -> text("Val" + i)).collect(Collectors.toList());
+        Complex value = list(values);
+        for(int size : new int[] { 0, 1, 31, 32, 33, 1024, 1025, 32768, 32800, 39999, 40000, random.nextInt(40000) }) {
+            Complex[] split = value.split(number(size + 1));
+            assertEquals(list(values.subList(0, size)), split[0]);
+            assertTrue(size == 0 || split[0] instanceof VectorTrieComplex);
+            assertEquals(value.tailMap(number(size + 1)), split[1]);
+            assertEquals(value, split[0].concat(split[1]));
+            Complex appended = split[0].addAll(values.subList(0, 40));
+            List<Value> expected = new ArrayList<>(values.subList(0, size));
+            expected.addAll(values.subList(0, 40));
+            assertEquals(list(expected), appended);
+            assertEquals(list(expected).hashCode(), appended.hashCode());
+        }
+        assertEquals(list(values.subList(100, 200)).allValues(), value.subMap(number(101), number(201)).allValues());
+        assertSame(value, value.headMap(number(50000)));
+    }
+
+    @Test
+    public void hashCode_listVersions_sameAsBuilt() {
+        Random random = new Random(42);
+        List<Value> values = new ArrayList<>();
+        Complex value = empty();
+        for(int i = 0; i < 3000; i++) {
+            int operation = random.nextInt(10);
+            if(operation == 0 && !values.isEmpty()) {
+                int index = random.nextInt(values.size());
+                values.set(index, text("Set" + i));
+                value = value.put(number(index + 1), text("Set" + i));
+            } else if(operation == 1 && !values.isEmpty()) {
+                value = value.put(number(values.size()), null);
+                values.remove(values.size() - 1);
+            } else {
+                values.add(number(i));
+                value = value.add(number(i));
+            }
+            value.hashCode(); // known hash codes are carried forward to the next version
+            if(i % 100 == 0) {
+                assertEquals(list(values), value);
+                assertEquals(list(values).hashCode(), value.hashCode());
+            }
+        }
+        assertTrue(value instanceof VectorTrieComplex);
+        assertEquals(complex(value.allEntries()).hashCode(), value.hashCode());
+    }
+
+    @Test
+    public void entries_parallel_sameAsSequential() {
+        Random random = new Random(42);
+        List<Complex> values = Arrays.asList(
+                empty(),
+                complex(randomMap(random, 10)),
+                complex(randomMap(random, 900)),
+                list(IntStream.rangeClosed(1, 5000).mapToObj(i -> number(i)).collect(Collectors.toList())));
+        for(Complex value : values) {
+            Spliterator<Pair> spliterator = value.spliterator();
+            assertEquals(value.size(), spliterator.getExactSizeIfKnown());
+            assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.SORTED | Spliterator.IMMUTABLE));
+            assertEquals(value.allKeys(), value.keys().parallel().collect(Collectors.toList()));
+            assertEquals(value.size(), value.entries().parallel().count());
+        }
+    }
+
+    @Test
+    public void spliterator_split_balanced() {
+        Complex value = complex(IntStream.range(0, 1000).mapToObj(i -> pair(number(i), text("Val" + i))).collect(Collectors.toList()));
+        Spliterator<Pair> suffix = value.spliterator();
+        assertTrue(suffix.tryAdvance(p -> assertEquals(number(0), p.key())));
+        Spliterator<Pair> prefix = suffix.trySplit();
+        assertEquals(499, prefix.estimateSize());
+        assertEquals(500, suffix.estimateSize());
+        assertTrue(prefix.tryAdvance(p -> assertEquals(number(1), p.key())));
+        assertTrue(suffix.tryAdvance(p -> assertEquals(number(500), p.key())));
+    }
+
+    @Test
+    public void complex_large_bTree() {
+        Complex value = complex(IntStream.range(0, 5000).mapToObj(i -> pair(number(i * 2), text("Val" + i))).collect(Collectors.toList()));
+        assertTrue(value instanceof BTreeComplex);
+        assertEquals(5000, value.size());
+        assertEquals(text("Val2500"), value.get(number(5000)).get());
+        assertFalse(value.get(number(5001)).isPresent());
+        assertEquals(pair(number(5000), text("Val2500")).key(), value.entryAt(2500).key());
+        assertEquals(2501, value.rankOf(number(5001)));
+        assertEquals(9999, value.nextIndex());
+        assertEquals(value, BinaryTreeComplex.builder(value).build());
+        assertEquals(BinaryTreeComplex.builder(value).build().hashCode(), value.hashCode());
+        assertSame(value, value.put(number(1), null));
+    }
+
+    @Test
+    public void bTree_random_sameAsMap() {
+        Random random = new Random(42);
+        SortedMap<Value, Value> expected = randomMap(random, 3000);
+        for(int i = 0; i < 500; i++) {
+            expected.put(text("Key" + i), text("Val" + i));
+        }
+        Complex value = complex(expected);
+        assertTrue(value instanceof BTreeComplex);
+        for(int i = 0; i < 20000; i++) {
+            Value key = random.nextBoolean() ? number(random.nextInt(1000)) : text("Key" + random.nextInt(600));
+            if(random.nextInt(3) == 0) {
+                value = value.put(key, number(i));
+                expected.put(key, number(i));
+            } else {
+                value = value.put(key, null);
+                expected.remove(key);
+            }
+            if(i % 1000 == 0) {
+                assertEquals(expected.size(), value.size());
+                assertEqualPairs(complex(expected).allEntries(), value);
+                assertEquals(expected.headMap(key).size(), value.rankOf(key));
+            }
+        }
+        assertEqualPairs(complex(expected).allEntries(), value);
+        assertEquals(complex(expected).allKeys(), value.keys().parallel().collect(Collectors.toList()));
+        assertEquals(expected.headMap(text("")).isEmpty() ? 1 : expected.headMap(text("")).lastKey().asNumeric().toInteger() + 1, value.nextIndex());
+        for(Value key : new ArrayList<>(expected.keySet())) {
+            value = value.put(key, null);
+        }
+        assertSame(empty(), value);
+    }
+
+    @Test
+    public void bTree_splitAndBulk_sameAsMap() {
+        Random random = new Random(42);
+        SortedMap<Value, Value> expected = new TreeMap<>();
+        for(int i = 0; i < 5000; i++) {
+            expected.put(number(i * 2), number(random.nextInt(10)));
+        }
+        Complex value = complex(expected);
+        assertTrue(value instanceof BTreeComplex);
+        for(int i = 0; i < 50; i++) {
+            Value key = number(random.nextInt(10100) - 50);
+            Complex[] split = value.split(key);
+            assertEqualPairs(complex(expected.headMap(key)).allEntries(), split[0]);
+            assertEqualPairs(complex(expected.tailMap(key)).allEntries(), split[1]);
+            assertEquals(complex(expected.headMap(key)).hashCode(), split[0].hashCode());
+            assertEquals(value, split[0].concat(split[1]));
+            Value toKey = number(key.asNumeric().toInteger() + random.nextInt(3000));
+            assertEqualPairs(complex(expected.subMap(key, toKey)).allEntries(), value.subMap(key, toKey));
+            // modify the slices, which can have narrow nodes along the boundary
+            SortedMap<Value, Value> tail = new TreeMap<>(expected.tailMap(key));
+            Complex modified = split[1];
+            for(int j = 0; j < 200; j++) {
+                Value k = number(key.asNumeric().toInteger() + random.nextInt(400));
+                if(random.nextBoolean() && k.compareTo(key) >= 0) {
+                    modified = modified.put(k, text("New"));
+                    tail.put(k, text("New"));
+                } else {
+                    modified = modified.put(k, null);
+                    tail.remove(k);
+                }
+            }
+            assertEqualPairs(complex(tail).allEntries(), modified);
+        }
+        SortedMap<Value, Value> small = new TreeMap<>();
+        SortedMap<Value, Value> large = new TreeMap<>();
+        for(int i = 0; i < 8000; i++) {
+            (i < 100 ? small : large).put(number(random.nextInt(12000)), text("Other"));
+        }
+        for(SortedMap<Value, Value> other : Arrays.asList(small, large)) {
+            SortedMap<Value, Value> union = new TreeMap<>(other);
+            union.putAll(expected);
+            SortedMap<Value, Value> intersection = new TreeMap<>(expected);
+            intersection.keySet().retainAll(other.keySet());
+            SortedMap<Value, Value> difference = new TreeMap<>(expected);
+            difference.keySet().removeAll(other.keySet());
+            assertEqualPairs(complex(union).allEntries(), value.merge(complex(other), (x, y) -> x));
+            assertEqualPairs(complex(intersection).allEntries(), value.intersect(complex(other)));
+            assertEqualPairs(complex(difference).allEntries(), value.difference(complex(other)));
+        }
+        assertSame(value, value.intersect(value));
+        assertSame(value, value.headMap(number(20000)));
+    }
+
+    @Test
+    public void diff_nested_success() {
+        Complex oldValue = complex(
+                pair(text("a"), text("1")),
+                pair(text("b"), complex(pair(text("x"), text("2")), pair(text("y"), text("3")))),
+                pair(text("c"), text("4")));
+        Complex newValue = complex(
+                pair(text("b"), complex(pair(text("x"), text("2")), pair(text("y"), text("5")))),
+                pair(text("c"), text("4")),
+                pair(text("d"), list(text("6"))));
+        List<Change> changes = oldValue.diff(newValue);
+        assertEquals(3, changes.size());
+        assertChange(Values.reference(text("a")), text("1"), null, changes.get(0));
+        assertChange(Values.reference(text("b"), text("y")), text("3"), text("5"), changes.get(1));
+        assertChange(Values.reference(text("d")), null, list(text("6")), changes.get(2));
+        assertTrue(oldValue.diff(oldValue).isEmpty());
+        assertTrue(oldValue.diff(BinaryTreeComplex.builder(oldValue).build()).isEmpty());
+    }
+
+    @Test
+    public void diff_random_sameAsMap() {
+        Random random = new Random(42);
+        for(int size : new int[] { 10, 100, 3000 }) {
+            SortedMap<Value, Value> map = randomMap(random, size);
+            for(Complex oldValue : Arrays.asList(complex(map), BinaryTreeComplex.builder(complex(map)).build())) {
+                Complex newValue = oldValue;
+                SortedMap<Value, Value> newMap = new TreeMap<>(map);
+                for(int i = 0; i < 20; i++) {
+                    Value key = number(random.nextInt(1000));
+                    Value value = random.nextBoolean() ? null : number(random.nextInt(20));
+                    newValue = newValue.put(key, value);
+                    if(value == null) {
+                        newMap.remove(key);
+                    } else {
+                        newMap.put(key, value);
+                    }
+                }
+                List<Change> changes = oldValue.diff(newValue);
+                SortedMap<Value, Value> patched = new TreeMap<>(map);
+                for(Change change : changes) {
+                    Value key = change.path().partAt(0);
+                    assertEquals(map.get(key), change.oldValue().orElse(null));
+                    if(change.newValue().isPresent()) {
+                        patched.put(key, change.newValue().get());
+                    } else {
+                        patched.remove(key);
+                    }
+                }
+                assertEquals(newMap, patched);
+                assertTrue(changes.size() <= 20);
+            }
+        }
+    }
+
+    @Test
+    public void diff_bTree_sameAsMap() {
+        Random random = new Random(42);
+        SortedMap<Value, Value> map = new TreeMap<>();
+        for(int i = 0; i < 5000; i++) {
+            map.put(number(i * 2), number(random.nextInt(10)));
+        }
+        Complex oldValue = complex(map);
+        assertTrue(oldValue instanceof BTreeComplex);
+        for(int changeCount : new int[] { 1, 20, 2000 }) {
+            Complex newValue = oldValue;
+            SortedMap<Value, Value> newMap = new TreeMap<>(map);
+            for(int i = 0; i < changeCount; i++) {
+                Value key = number(random.nextInt(10000));
+                Value value = random.nextBoolean() ? null : text("New" + i);
+                newValue = newValue.put(key, value);
+                if(value == null) {
+                    newMap.remove(key);
+                } else {
+                    newMap.put(key, value);
+                }
+            }
+            assertTrue(newValue instanceof BTreeComplex);
+            SortedMap<Value, Value> patched = new TreeMap<>(map);
+            for(Change change : oldValue.diff(newValue)) {
+                Value key = change.path().partAt(0);
+                assertEquals(map.get(key), change.oldValue().orElse(null));
+                assertEquals(newMap.get(key), change.newValue().orElse(null));
+                patched.put(key, change.newValue().orElse(null));
+            }
+            patched.values().removeIf(value -> value == null);
+            assertEquals(newMap, patched);
+            assertEquals(0, newValue.diff(complex(newMap)).size());
+        }
+        Complex[] split = oldValue.split(number(777));
+        assertTrue(oldValue.diff(split[0].concat(split[1])).isEmpty());
+    }
+
+    @Test
+    public void diff_list_success() {
+        Complex oldValue = list(IntStream.rangeClosed(1, 1000).mapToObj(i -> number(i)).collect(Collectors.toList()));
+        Complex newValue = oldValue.put(number(500), text("x")).add(text("y"));
+        List<Change> changes = oldValue.diff(newValue);
+        assertEquals(2, changes.size());
+        assertChange(Values.reference(number(500)), number(500), text("x"), changes.get(0));
+        assertChange(Values.reference(number(1001)), null, text("y"), changes.get(1));
+        assertEquals(1, newValue.diff(oldValue.put(number(500), text("x"))).size());
+    }
+
+    @Test
+    public void builder_random_sameAsPut() {
+        Random random = new Random(42);
+        Complex expected = empty();
+        BinaryTreeComplex.Builder builder = BinaryTreeComplex.builder();
+        for(int i = 0; i < 5000; i++) {
+            Value key = number(random.nextInt(1000));
+            Value value = random.nextInt(4) == 0 ? null : text("Val" + i);
+            expected = expected.put(key, value);
+            builder.put(key, value);
+        }
+        Complex actual = builder.build();
+        assertEquals(expected, actual);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertTrue(height(actual) <= 12);
+    }
+
+    @Test
+    public void builder_initial_unchanged() {
+        Complex initial = complex(pair(text("k1"), text("v1")), pair(text("k2"), text("v2")));
+        BinaryTreeComplex.Builder builder = BinaryTreeComplex.builder(initial);
+        builder.put(text("k1"), null).put(text("k3"), text("v3"));
+        assertEquals(complex(pair(text("k1"), text("v1")), pair(text("k2"), text("v2"))), initial);
+        assertEquals(complex(pair(text("k2"), text("v2")), pair(text("k3"), text("v3"))), builder.build());
+    }
+
+    @Test
+    public void builder_build_frozen() {
+        BinaryTreeComplex.Builder builder = BinaryTreeComplex.builder();
+        for(int i = 1; i <= 100; i++) {
+            builder.put(number(i), text("Val" + i));
+        }
+        Complex first = builder.build();
+        int firstHash = first.hashCode();
+        for(int i = 1; i <= 100; i++) {
+            builder.put(number(i), i % 2 == 0 ? null : text("New" + i));
+        }
+        Complex second = builder.build();
+        assertSize(100, first);
+        assertSize(50, second);
+        assertEquals(text("Val1"), first.get(number(1)).get());
+        assertEquals(text("New1"), second.get(number(1)).get());
+        assertEquals(firstHash, first.hashCode());
+        assertEquals(7, height(first));
+    }
+
+    @Test
+    public void builder_nullKey_exception() {
+        assertException(IllegalArgumentException.class, () -> BinaryTreeComplex.builder().put(null, text("foo")));
+    }
+
     @Test
     public void put_invalid_exception() {
         assertException(IllegalArgumentException.class, () -> complex().put(null, text("foo")));
@@ -314,6 +1006,28 @@ public class ComplexTest {
         assertEquals(expectedSize, value.allValues().size());
     }
 
+    private static void assertChange(Reference path, Value oldValue, Value newValue, Change change) {
+        assertEquals(path, change.path());
+        assertEquals(oldValue, change.oldValue().orElse(null));
+        assertEquals(newValue, change.newValue().orElse(null));
+    }
+
+    private static Complex entry(Value key, SortedMap<Value, Value> map) {
+        return complex(key, map.get(key));
+    }
+
+    private static Complex entry(Optional<Pair> pair) {
+        return pair.map(p -> complex(p.key(), p.value())).orElse(null);
+    }
+
+    private static SortedMap<Value, Value> randomMap(Random random, int size) {
+        SortedMap<Value, Value> map = new TreeMap<>();
+        for(int i = 0; i < size; i++) {
+            map.put(number(random.nextInt(1000)), number(random.nextInt(10)));
+        }
+        return map;
+    }
+
     private int height(Complex value) {
         try {
             Field field = value.getClass().getDeclaredField("height");
@@ -323,4 +1037,18 @@ public class ComplexTest {
             throw new IllegalStateException("Failed to determine height of tree (instance: " + value.getClass().getName() + ").", e);
         }
     }
+
+    private static Pair customPair(Value key, Value value) {
+        return new Pair() {
+            @Override
+            public Value key() {
+                return key;
+            }
+
+            @Override
+            public Value value() {
+                return value;
+            }
+        };
+    }
 }
@@ -0,0 +1,141 @@
+package styx.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static styx.data.AssertUtils.assertException;
+import static styx.data.Values.cursor;
+import static styx.data.Values.number;
+import static styx.data.Values.parse;
+import static styx.data.Values.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CursorTest {
+
+    @Test
+    public void cursor_tag_events() {
+        assertEquals("[OPEN 1 0, OPEN tag 1, VALUE 1 a 2, VALUE 2 b 2, CLOSE tag 1, CLOSE 1 0]", events(cursor("tag { a, b }")));
+    }
+
+    @Test
+    public void cursor_nested_events() {
+        assertEquals("[OPEN 1 0, VALUE x 1 1, OPEN y 1, VALUE 1 0x01 2, OPEN 2 2, VALUE a </b> 3, CLOSE 2 2, CLOSE y 1, CLOSE 1 0]",
+                events(cursor("{ x: 1, y: { 0x01, { a: </b> } } }")));
+    }
+
+    @Test
+    public void cursor_topLevelLines_events() {
+        assertEquals("[VALUE 1 a 0, VALUE 2 b 0, OPEN 3 0, VALUE 1 c 1, CLOSE 3 0]", events(cursor("a\nb\n{ c }")));
+    }
+
+    @Test
+    public void cursor_complexKey_keyAsValue() {
+        try(Cursor cursor = cursor("{ @{ k: 1 }: v }")) {
+            assertTrue(cursor.next());
+            assertTrue(cursor.next());
+            assertEquals(Values.complex(text("k"), number(1)), cursor.key());
+            assertEquals(text("v"), cursor.value());
+        }
+    }
+
+    @Test
+    public void cursor_skipChildren_closeIsCurrent() {
+        try(Cursor cursor = cursor("{ x: { y: { 1, 2 } }, z: 3 }")) {
+            assertTrue(cursor.next());
+            assertTrue(cursor.next());
+            assertEquals(Cursor.Event.OPEN, cursor.event());
+            assertEquals(text("x"), cursor.key());
+            cursor.skipChildren();
+            assertEquals(Cursor.Event.CLOSE, cursor.event());
+            assertEquals(text("x"), cursor.key());
+            assertEquals(1, cursor.depth());
+            assertTrue(cursor.next());
+            assertEquals(text("z"), cursor.key());
+            assertEquals(number(3), cursor.value());
+        }
+    }
+
+    @Test
+    public void cursor_large_sameAsParse() throws IOException {
+        StringBuilder input = new StringBuilder("{\n");
+        for(int i = 0; i < 10000; i++) {
+            input.append("{ id: ").append(i).append(", name: \"näme ").append(i).append("\", tags { a, b } }\n");
+        }
+        input.append("}");
+        Path path = Paths.get("target/test/CursorTest/large.styx");
+        Files.createDirectories(path.getParent());
+        Files.write(path, input.toString().getBytes(StandardCharsets.UTF_8));
+        Complex expected = parse(input.toString()).asComplex();
+
+        try(Cursor cursor = cursor(path)) {
+            assertTrue(cursor.next());
+            int count = 0;
+            while(cursor.next() && cursor.event() == Cursor.Event.OPEN) {
+                Complex entry = expected.get(cursor.key()).get().asComplex();
+                assertTrue(cursor.next());
+                assertEquals(entry.get(text("id")).get(), cursor.value());
+                assertTrue(cursor.next());
+                assertEquals(entry.get(text("name")).get(), cursor.value());
+                assertTrue(cursor.next());
+                cursor.skipChildren();
+                assertTrue(cursor.next());
+                assertEquals(Cursor.Event.CLOSE, cursor.event());
+                count++;
+            }
+            assertEquals(expected.size(), count);
+            assertFalse(cursor.next());
+            assertNull(cursor.event());
+        }
+        try(Cursor cursor = cursor(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)))) {
+            assertEquals(events(cursor(input.toString())), events(cursor));
+        }
+    }
+
+    @Test
+    public void cursor_invalidAccess_exception() {
+        try(Cursor cursor = cursor(new StringReader("{ a { b } }"))) {
+            assertException(InvalidAccessException.class, "There is no current event.", cursor::key);
+            assertTrue(cursor.next());
+            assertException(InvalidAccessException.class, "The current event is not a value.", cursor::value);
+            assertTrue(cursor.next());
+            assertTrue(cursor.next());
+            assertTrue(cursor.next());
+            assertEquals(text("b"), cursor.value());
+            assertException(InvalidAccessException.class, "The current event is not the opening of a complex value.", cursor::skipChildren);
+        }
+    }
+
+    @Test
+    public void cursor_invalid_exception() {
+        try(Cursor cursor = cursor("{ a, ~ }")) {
+            assertTrue(cursor.next());
+            assertTrue(cursor.next());
+            assertException(ParserException.class, "Unexpected token '~'.", cursor::next);
+        }
+        try(Cursor cursor = cursor("{ a, b ")) {
+            assertTrue(cursor.next());
+            assertTrue(cursor.next());
+            assertException(ParserException.class, "Unexpected EOF.", cursor::next);
+        }
+    }
+
+    private static String events(Cursor cursor) {
+        List<String> events = new ArrayList<>();
+        while(cursor.next()) {
+            events.add(cursor.event() + " " + cursor.key() + (cursor.event() == Cursor.Event.VALUE ? " " + cursor.value() : "") + " " + cursor.depth());
+        }
+        return events.toString();
+    }
+}
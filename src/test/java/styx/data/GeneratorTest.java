@@ -1,17 +1,20 @@
 package styx.data;
 
 import static org.junit.Assert.assertEquals;
+import static styx.data.Values.binary;
 import static styx.data.Values.complex;
 import static styx.data.Values.generate;
 import static styx.data.Values.list;
 import static styx.data.Values.number;
 import static styx.data.Values.pair;
+import static styx.data.Values.parse;
 import static styx.data.Values.text;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -123,4 +126,31 @@ public class GeneratorTest {
         assertEquals("{ @{ key1: 1, key2: 2 }: { val1, val2 } }", generate(value, GeneratorOption.PRETTY));
         assertEquals("{\n    @{ key1: 1, key2: 2 }: {\n        val1\n        val2\n    }\n}", generate(value, GeneratorOption.INDENT));
     }
+
+    @Test
+    public void generate_numbers_success() {
+        Value value = list(number(0), number(-7), number(Long.MIN_VALUE), number(Long.MAX_VALUE), number(0.5), number(new BigDecimal("1E400")));
+        assertEquals("{0,-7,-9223372036854775808,9223372036854775807,0.5,1E400}", generate(value));
+        assertEquals(value, parse(generate(value)));
+    }
+
+    @Test
+    public void generate_largeTextAndBinary_success() throws IOException {
+        StringBuilder raw = new StringBuilder();
+        StringBuilder escaped = new StringBuilder();
+        for(int i = 0; i < 5000; i++) {
+            raw.append("ab\"c\\\n\u00e4");
+            escaped.append("ab\\\"c\\\\\\n\u00e4");
+        }
+        byte[] bytes = new byte[10000];
+        StringBuilder hex = new StringBuilder("0x");
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 7);
+            hex.append(String.format("%02X", bytes[i] & 0xFF));
+        }
+        Value value = list(text(raw.toString()), binary(bytes));
+        assertEquals("{\"" + escaped + "\"," + hex + "}", generate(value));
+        assertEquals(value, parse(generate(value)));
+        assertEquals(value, parse(generate(value, GeneratorOption.INDENT)));
+    }
 }
@@ -2,6 +2,7 @@ package styx.data;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static styx.data.AssertUtils.assertException;
 import static styx.data.Values.complex;
 import static styx.data.Values.empty;
@@ -199,6 +200,52 @@ public abstract class GenericStoreTest {
         }
     }
 
+    @Test
+    public void browse_range_valid() {
+        try(Store store = Store.open(url)) {
+            Value value = list(text("val1"), text("val2"), complex(text("k"), text("v")), text("val4"), text("val5"));
+            store.write(root(), value);
+
+            assertEquals(
+                    complex(pair(number(2), text("val2")), pair(number(3), complex())),
+                    complex(store.browse(root(), number(2), number(4)).toArray(Pair[]::new)));
+            assertEquals(
+                    complex(pair(number(4), text("val4")), pair(number(5), text("val5"))),
+                    complex(store.browse(root(), number(3.5), null).toArray(Pair[]::new)));
+            assertEquals(
+                    list(text("val1")),
+                    complex(store.browse(root(), null, number(2)).toArray(Pair[]::new)));
+            assertEquals(
+                    empty(),
+                    complex(store.browse(root(), text("a"), null).toArray(Pair[]::new)));
+            assertEquals(
+                    empty(),
+                    complex(store.browse(root(), number(2), number(2)).toArray(Pair[]::new)));
+        }
+    }
+
+    @Test
+    public void browse_invertedRange_exception() {
+        try(Store store = Store.open(url)) {
+            store.write(root(), list(text("val1"), text("val2")));
+
+            assertException(IllegalArgumentException.class, "The lower bound must not be greater than the upper bound.",
+                    () -> store.browse(root(), number(2), number(1)));
+        }
+    }
+
+    @Test
+    public void estimateSize_valid_success() {
+        try(Store store = Store.open(url)) {
+            store.write(root(), complex(text("key"), list(text("val1"), text("val2"))));
+
+            assertEquals(Values.estimateSize(store.read(root()).get()), store.estimateSize(root()));
+            assertTrue(store.estimateSize(root()) > store.estimateSize(reference(text("key"))));
+            assertTrue(store.estimateSize(reference(text("key"))) > 0);
+            assertEquals(0, store.estimateSize(reference(text("badKey"))));
+        }
+    }
+
     @Test
     public void browse_nonComplex_exception() {
         try(Store store = Store.open(url)) {
@@ -7,6 +7,8 @@ import static org.junit.Assert.assertTrue;
 import static styx.data.AssertUtils.assertException;
 import static styx.data.Values.number;
 
+import java.math.BigDecimal;
+
 import org.junit.Test;
 
 public class NumericTest {
@@ -99,4 +101,62 @@ public class NumericTest {
         assertException(ArithmeticException.class, () -> value.toLong());
         assertEquals(12.34, value.toDouble(), 0.0);
     }
+
+    @Test
+    public void number_bigDecimal_success() {
+        Numeric value = number(new BigDecimal("12.3400000000000000000000001"));
+        assertNotNull(value);
+        assertFalse(value.isInteger());
+        assertException(ArithmeticException.class, () -> value.toInteger());
+        assertException(ArithmeticException.class, () -> value.toLong());
+        assertException(ArithmeticException.class, () -> value.toDouble());
+        assertEquals(new BigDecimal("12.3400000000000000000000001"), value.toBigDecimal());
+        assertEquals("12.3400000000000000000000001", value.toDecimalString());
+    }
+
+    @Test
+    public void number_bigDecimalHuge_success() {
+        Numeric value = number(new BigDecimal("123456789012345678901234567890"));
+        assertFalse(value.isInteger());
+        assertException(ArithmeticException.class, () -> value.toLong());
+        assertEquals("123456789012345678901234567890", value.toDecimalString());
+        assertEquals("1E400", number(new BigDecimal("1E+400")).toDecimalString());
+    }
+
+    @Test
+    public void number_bigDecimalNormalized_equal() {
+        assertEquals(number(1234), number(new BigDecimal("1234.000")));
+        assertEquals(number(12340000000L), number(new BigDecimal("12340000000")));
+        assertEquals(number(12.34), number(new BigDecimal("12.340")));
+        assertEquals(number(12.34).hashCode(), number(new BigDecimal("12.340")).hashCode());
+        assertEquals(number(new BigDecimal("1.00000000000000000001")), number(new BigDecimal("1.000000000000000000010")));
+        assertEquals(number(new BigDecimal("1.00000000000000000001")).hashCode(), number(new BigDecimal("1.000000000000000000010")).hashCode());
+    }
+
+    @Test
+    public void toBigDecimal_all_success() {
+        assertEquals(new BigDecimal("1234"), number(1234).toBigDecimal());
+        assertEquals(new BigDecimal("12340000000"), number(12340000000L).toBigDecimal());
+        assertEquals(new BigDecimal("12.34"), number(12.34).toBigDecimal());
+        assertException(ArithmeticException.class, () -> number(Double.NaN).toBigDecimal());
+    }
+
+    @Test
+    public void compareTo_largeLongs_exact() {
+        long large = 1L << 53;
+        assertEquals(-1, number(large).compareTo(number(large + 1)));
+        assertEquals(1, number(Long.MAX_VALUE).compareTo(number(Long.MAX_VALUE - 1)));
+        assertEquals(-1, number(large + 1).compareTo(number((double) (large + 2))));
+        assertEquals(1, number(Long.MAX_VALUE).compareTo(number(9.2233720368547E18)));
+    }
+
+    @Test
+    public void compareTo_mixed_exact() {
+        assertEquals(-1, number(1).compareTo(number(1.5)));
+        assertEquals(1, number(2).compareTo(number(1.5)));
+        assertEquals(-1, number(1.5).compareTo(number(new BigDecimal("1.50000000000000000001"))));
+        assertEquals(1, number(new BigDecimal("1E400")).compareTo(number(Long.MAX_VALUE)));
+        assertEquals(-1, number(new BigDecimal("1E400")).compareTo(number(Double.POSITIVE_INFINITY)));
+        assertEquals(1, number(new BigDecimal("-1E400")).compareTo(number(Double.NEGATIVE_INFINITY)));
+    }
 }
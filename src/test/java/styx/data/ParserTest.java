@@ -1,6 +1,8 @@
 package styx.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static styx.data.AssertUtils.assertException;
 import static styx.data.Values.binary;
 import static styx.data.Values.complex;
@@ -8,17 +10,27 @@ import static styx.data.Values.list;
 import static styx.data.Values.number;
 import static styx.data.Values.pair;
 import static styx.data.Values.parse;
+import static styx.data.Values.parseLazy;
 import static styx.data.Values.reference;
 import static styx.data.Values.text;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import org.junit.Test;
 
+import styx.data.impl.value.LazyComplex;
+
 public class ParserTest {
 
     @Test
@@ -59,6 +71,26 @@ public class ParserTest {
         assertEquals(number(-0.123456789), parse("  -0012.345678900E-2  "));
     }
 
+    @Test
+    public void parse_numberExact_success() {
+        assertEquals(number(9007199254740993L), parse("9007199254740993"));
+        assertEquals(number(Long.MAX_VALUE), parse("9223372036854775807"));
+        assertEquals(number(Long.MIN_VALUE), parse("-9223372036854775808"));
+        assertEquals(number(9007199254740991000L), parse("9007199254740991E3"));
+        assertEquals(number(new BigDecimal("9223372036854775808")), parse("9223372036854775808"));
+        assertEquals(number(new BigDecimal("0.10000000000000001")), parse("0.10000000000000001"));
+        assertEquals(number(new BigDecimal("1E400")), parse("1E400"));
+        assertEquals(number(0.30000000000000004), parse("0.30000000000000004"));
+        assertEquals(number(1.7976931348623157E308), parse("1.7976931348623157E308"));
+        assertEquals(number(1.5), parse("1.50000000000000000000"));
+    }
+
+    @Test
+    public void parse_numberNoDigits_exception() {
+        assertException(ParserException.class, "Invalid numeric value: digits expected.", () -> parse(" - "));
+        assertException(ParserException.class, "Invalid numeric value: digits expected.", () -> parse(" 1E "));
+    }
+
     @Test
     public void parse_numberBadChars_exception() {
         assertException(ParserException.class, "Invalid numeric value: unexpected token 'X'.", () -> parse(" 1234X "));
@@ -255,4 +287,121 @@ public class ParserTest {
         assertException(ParserException.class, "Unexpected token '}'.", () -> parse(" value } "));
         assertException(ParserException.class, "Unexpected token '@'.", () -> parse(" @ { } "));
     }
+
+    @Test
+    public void parseLazy_valid_sameAsParse() {
+        String[] inputs = {
+                "tag { value1, value2 }",
+                "0",
+                "{}",
+                "{val1,key2:val2,tag3{val3A,val3B},key4:tag4{val4A,val4B},key5:tag5A tag5B{val5A,val5B}}",
+                "{val1,key2:val2,{tag3:{val3A,val3B}},key4:{tag4:{val4A,val4B}},key5:{tag5A:{tag5B:{val5A,val5B}}}}",
+                "{@{{val1,val2}}:{}}",
+                "a { b: \"}{\\\"\" } \n c { { 1, 2 }, </x/{ 1 }/y> } \n d" };
+        for(String input : inputs) {
+            assertEquals(parse(input), parseLazy(input));
+            assertEquals(parseLazy(input), parse(input));
+            assertEquals(parse(input).hashCode(), parseLazy(input).hashCode());
+        }
+        assertEquals(parse(Paths.get("src/test/resources/valid.styx")), parseLazy(Paths.get("src/test/resources/valid.styx")));
+    }
+
+    @Test
+    public void parseLazy_nested_materializedOnAccess() {
+        Complex value = parseLazy("{ a: { a1: { x }, a2: { y } }, b: { b1: { z } } }").asComplex();
+        LazyComplex a = (LazyComplex) value.get(text("a")).get();
+        LazyComplex b = (LazyComplex) value.get(text("b")).get();
+        assertFalse(a.isMaterialized());
+        assertFalse(b.isMaterialized());
+
+        LazyComplex a1 = (LazyComplex) a.get(text("a1")).get();
+        assertTrue(a.isMaterialized());
+        assertFalse(a1.isMaterialized());
+        assertFalse(((LazyComplex) a.get(text("a2")).get()).isMaterialized());
+        assertFalse(b.isMaterialized());
+
+        assertEquals(list(text("x")), a1);
+        assertTrue(a1.isMaterialized());
+        assertFalse(b.isMaterialized());
+    }
+
+    @Test
+    public void parseLazy_utf8File_materializedOnAccess() throws IOException {
+        StringBuilder input = new StringBuilder("{\n");
+        for(int i = 0; i < 2000; i++) {
+            input.append("key").append(i).append(": { \"äöü € 😀 {\\\"").append(i).append("\\\"\", nested { ").append(i).append(".5 } }\n");
+        }
+        input.append("}");
+        Path path = Paths.get("target/test/ParserTest/lazy.styx");
+        Files.createDirectories(path.getParent());
+        Files.write(path, input.toString().getBytes(StandardCharsets.UTF_8));
+        Complex value = parseLazy(path).asComplex();
+        LazyComplex last = (LazyComplex) value.get(text("key1999")).get();
+        assertFalse(last.isMaterialized());
+        assertEquals(complex(pair(number(1), text("äöü € 😀 {\"1999\"")), pair(number(2), complex(text("nested"), list(number(1999.5))))), last);
+        assertTrue(last.isMaterialized());
+        assertEquals(parse(input.toString()), parseLazy(path));
+    }
+
+    @Test
+    public void parseLazy_invalidBlock_exceptionOnAccess() {
+        Complex value = parseLazy("{ good: { 1 }, bad: { key : : value } }").asComplex();
+        assertEquals(list(number(1)), value.get(text("good")).get());
+        assertException(ParserException.class, "Unexpected token ':'.", () -> value.get(text("bad")).get().asComplex().size());
+        assertException(ParserException.class, "Unexpected EOF.", () -> parseLazy(" { key "));
+        assertException(ParserException.class, "closing '\"' expected.", () -> parseLazy(" { \"} "));
+    }
+
+    @Test
+    public void parse_largeReader_sameAsString() {
+        StringBuilder input = new StringBuilder("{\n");
+        for(int i = 0; i < 2000; i++) {
+            input.append("key").append(i).append(": { \"text ").append(i).append(" \\\"escaped\\\" ä\", 0x0A1B2C")
+                    .append(", -").append(i).append(".25E-3, </x/").append(i).append("> }\n");
+        }
+        input.append(new String(new char[10000]).replace('\0', 'i')).append(": \"").append(new String(new char[10000]).replace('\0', 't')).append("\"\n}");
+        Value expected = parse(input.toString());
+        assertEquals(2001, expected.asComplex().size());
+        assertEquals(text("text 5 \"escaped\" ä"), expected.asComplex().get(text("key5")).get().asComplex().get(number(1)).get());
+        assertEquals(expected, parse(new StringReader(input.toString())));
+        assertEquals(expected, parse(new FilterReader(new StringReader(input.toString())) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 3)); // tokens cross the block boundaries
+            }
+        }));
+    }
+
+    @Test
+    public void parse_utf8_sameAsString() throws IOException {
+        StringBuilder input = new StringBuilder("{\n");
+        for(int i = 0; i < 2000; i++) {
+            input.append("key").append(i).append(": { \"äöü € 😀 \\\"").append(i).append("\\\"\", 0x0A1B2C, ").append(i).append(".5 }\n");
+        }
+        input.append("}");
+        Value expected = parse(input.toString());
+        byte[] bytes = input.toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        Path path = Paths.get("target/test/ParserTest/utf8.styx");
+        Files.createDirectories(path.getParent());
+        Files.write(path, bytes);
+        assertEquals(text("äöü € 😀 \"5\""), expected.asComplex().get(text("key5")).get().asComplex().get(number(1)).get());
+        assertEquals(expected, parse(bytes));
+        assertEquals(expected, parse(direct));
+        assertEquals(0, direct.position());
+        assertEquals(expected, parse(path));
+        assertEquals(expected, parse(new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+                return super.read(buffer, offset, Math.min(length, 3)); // characters cross the block boundaries
+            }
+        }));
+    }
+
+    @Test
+    public void parse_invalidUtf8_exception() {
+        assertException(ParserException.class, "Invalid textual value: invalid UTF-8.", () -> parse(new byte[] { '"', (byte) 0xC3, '"' }));
+        assertException(ParserException.class, "Invalid textual value: invalid UTF-8.", () -> parse(new byte[] { '"', (byte) 0xED, (byte) 0xA0, (byte) 0x80, '"' }));
+    }
 }
@@ -4,7 +4,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static styx.data.AssertUtils.assertException;
+import static styx.data.Values.number;
 import static styx.data.Values.reference;
 import static styx.data.Values.root;
 import static styx.data.Values.text;
@@ -16,6 +18,8 @@ import java.util.List;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import styx.data.impl.value.LinkedListReference;
+
 public class ReferenceTest {
 
     @Test
@@ -126,4 +130,49 @@ public class ReferenceTest {
     public void child_invalid_exception() {
         assertException(IllegalArgumentException.class, () -> reference().child((Value) null));
     }
+
+    @Test
+    public void child_repeated_same() {
+        assertSame(reference(text("part1"), text("part2")), reference(text("part1"), text("part2")));
+        assertSame(reference(text("part1")), reference(text("part1"), text("part2")).parent().get());
+    }
+
+    @Test
+    public void hashCode_linkedList_equal() {
+        Reference value = LinkedListReference.ROOT.child(text("part1")).child(number(2));
+        assertEquals(value, reference(text("part1"), number(2)));
+        assertEquals(reference(text("part1"), number(2)), value);
+        assertEquals(value.hashCode(), reference(text("part1"), number(2)).hashCode());
+    }
+
+    @Test
+    public void isAncestorOf_valid_success() {
+        Reference value = reference(text("part1"), text("part2"));
+        assertTrue(root().isAncestorOf(value));
+        assertTrue(reference(text("part1")).isAncestorOf(value));
+        assertFalse(value.isAncestorOf(value));
+        assertFalse(reference(text("part2")).isAncestorOf(value));
+        assertFalse(value.isAncestorOf(reference(text("part1"))));
+        assertTrue(LinkedListReference.ROOT.child(text("part1")).isAncestorOf(value));
+        assertTrue(reference(text("part1")).isAncestorOf(LinkedListReference.ROOT.child(text("part1")).child(text("part2"))));
+    }
+
+    @Test
+    public void commonPrefix_valid_success() {
+        Reference value = reference(text("part1"), text("part2"), text("part3"));
+        assertSame(reference(text("part1")), value.commonPrefix(reference(text("part1"), text("other"))));
+        assertSame(root(), value.commonPrefix(reference(text("other"))));
+        assertSame(value, value.commonPrefix(value));
+        assertEquals(reference(text("part1"), text("part2")), LinkedListReference.ROOT.child(text("part1")).child(text("part2")).commonPrefix(value));
+    }
+
+    @Test
+    public void relativize_valid_success() {
+        Reference value = reference(text("part1"), text("part2"), text("part3"));
+        assertSame(reference(text("part2"), text("part3")), reference(text("part1")).relativize(value));
+        assertSame(root(), value.relativize(value));
+        assertSame(value, root().relativize(value));
+        assertException(IllegalArgumentException.class, () -> value.relativize(reference(text("part1"))));
+        assertException(IllegalArgumentException.class, () -> reference(text("other")).relativize(value));
+    }
 }
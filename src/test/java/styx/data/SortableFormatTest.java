@@ -0,0 +1,140 @@
+package styx.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static styx.data.AssertUtils.assertException;
+import static styx.data.Values.binary;
+import static styx.data.Values.complex;
+import static styx.data.Values.generateSortable;
+import static styx.data.Values.list;
+import static styx.data.Values.number;
+import static styx.data.Values.pair;
+import static styx.data.Values.parseSortable;
+import static styx.data.Values.reference;
+import static styx.data.Values.root;
+import static styx.data.Values.text;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SortableFormatTest {
+
+    private static final Value[] VALUES = {
+            number(Double.NEGATIVE_INFINITY), number(new BigDecimal("-1E400")), number(-1E300), number(Long.MIN_VALUE),
+            number(-100), number(-10), number(-9.5), number(-9), number(-1), number(-0.5), number(-0.125), number(-0.12),
+            number(new BigDecimal("-1E-400")), number(0), number(new BigDecimal("1E-400")), number(0.001), number(0.1),
+            number(0.12), number(0.125), number(1), number(1.5), number(9), number(10), number(10.5), number(100),
+            number(101), number(Long.MAX_VALUE), number(new BigDecimal("9223372036854775808")), number(1E300),
+            number(new BigDecimal("1E400")), number(Double.POSITIVE_INFINITY), number(Double.NaN),
+            text(), text("\0"), text("\0\0"), text("\0a"), text("A"), text("a"), text("a\0"), text("a\0b"), text("ab"),
+            text("b"), text("ä"), text("€"), text("😀"), text("￿"),
+            binary(), binary(new byte[] { 0 }), binary(new byte[] { 0, 0 }), binary(new byte[] { 0, 1 }),
+            binary(new byte[] { 1 }), binary(new byte[] { 1, 0 }), binary(new byte[] { 1, -1 }), binary(new byte[] { -1 }),
+            root(), reference(number(1)), reference(number(1), text("a")), reference(number(2)), reference(text("a")),
+            Values.empty(), list(number(1)), list(number(1), number(2)), list(number(2)),
+            complex(number(1.5), text("x")), complex(text("a"), list()), complex(text("a"), list(text("x"))),
+            complex(list(), text("x")) };
+
+    @Test
+    public void generateSortable_examples_success() {
+        assertArrayEquals(new byte[] { 0x12 }, generateSortable(number(0)));
+        assertArrayEquals(new byte[] { 0x13, (byte) 0x81, 51, 0 }, generateSortable(number(5)));
+        assertArrayEquals(new byte[] { 0x13, (byte) 0x82, 43, 0 }, generateSortable(number(42)));
+        assertArrayEquals(new byte[] { 0x13, (byte) 0x82, 43, 0 }, generateSortable(number(new BigDecimal("42.000"))));
+        assertArrayEquals(new byte[] { 0x20, 'a', 0, -1, 0, 1 }, generateSortable(text("a\0")));
+        assertArrayEquals(new byte[] { 0x40, 0x20, 'a', 0, 1, 0 }, generateSortable(reference(text("a"))));
+    }
+
+    @Test
+    public void roundTrip_allKinds_same() {
+        for(Value value : VALUES) {
+            assertEquals(value, parseSortable(generateSortable(value)));
+        }
+    }
+
+    @Test
+    public void order_allPairs_sameAsValues() {
+        for(Value a : VALUES) {
+            for(Value b : VALUES) {
+                assertEquals(a + " vs " + b, Integer.signum(a.compareTo(b)), Integer.signum(compare(generateSortable(a), generateSortable(b))));
+            }
+        }
+    }
+
+    @Test
+    public void order_random_sameAsValues() {
+        Random random = new Random(42);
+        List<Value> values = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            values.add(randomValue(random, 2));
+        }
+        List<Value> sorted = new ArrayList<>(values);
+        sorted.sort(null);
+        List<byte[]> encoded = new ArrayList<>();
+        for(Value value : values) {
+            encoded.add(generateSortable(value));
+        }
+        encoded.sort(SortableFormatTest::compare);
+        for(int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), parseSortable(encoded.get(i)));
+        }
+    }
+
+    @Test
+    public void parseSortable_invalid_exception() {
+        assertException(ParserException.class, "Unexpected EOF.", () -> parseSortable(new byte[0]));
+        assertException(ParserException.class, "Unexpected EOF.", () -> parseSortable(new byte[] { 0x20, 'a' }));
+        assertException(ParserException.class, "invalid tag 1.", () -> parseSortable(new byte[] { 1 }));
+        assertException(ParserException.class, "invalid escape sequence.", () -> parseSortable(new byte[] { 0x30, 0, 2 }));
+        assertException(ParserException.class, "invalid digits.", () -> parseSortable(new byte[] { 0x13, (byte) 0x81, 0 }));
+        assertException(ParserException.class, "unexpected data after the value.", () -> parseSortable(new byte[] { 0x12, 0x12 }));
+    }
+
+    private static Value randomValue(Random random, int depth) {
+        switch(random.nextInt(depth > 0 ? 6 : 4)) {
+            case 0:
+                return number(random.nextInt(2000) - 1000);
+            case 1:
+                return number((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20));
+            case 2:
+                char[] chars = new char[random.nextInt(4)];
+                for(int i = 0; i < chars.length; i++) {
+                    chars[i] = "\0aAbä€\ud83d￿".charAt(random.nextInt(8));
+                }
+                return text(new String(chars));
+            case 3:
+                byte[] bytes = new byte[random.nextInt(4)];
+                for(int i = 0; i < bytes.length; i++) {
+                    bytes[i] = (byte) (random.nextInt(3) - 1);
+                }
+                return binary(bytes);
+            case 4:
+                Value[] parts = new Value[random.nextInt(3)];
+                for(int i = 0; i < parts.length; i++) {
+                    parts[i] = randomValue(random, depth - 1);
+                }
+                return reference(parts);
+            default:
+                List<Pair> pairs = new ArrayList<>();
+                for(int i = random.nextInt(3); i > 0; i--) {
+                    pairs.add(pair(randomValue(random, depth - 1), randomValue(random, depth - 1)));
+                }
+                return complex(pairs);
+        }
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        int commonLength = Math.min(a.length, b.length);
+        for(int index = 0; index < commonLength; index++) {
+            if(a[index] != b[index]) {
+                return Integer.compare(a[index] & 0xFF, b[index] & 0xFF);
+            }
+        }
+        return Arrays.equals(a, b) ? 0 : Integer.compare(a.length, b.length);
+    }
+}
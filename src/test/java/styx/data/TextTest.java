@@ -7,6 +7,8 @@ import static org.junit.Assert.assertSame;
 import static styx.data.AssertUtils.assertException;
 import static styx.data.Values.text;
 
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Test;
 
 public class TextTest {
@@ -52,4 +54,69 @@ public class TextTest {
         value.toCharArray()[1] = 'E';
         assertEquals('e', value.charAt(1));
     }
+
+    @Test
+    public void text_utf8Ascii_success() {
+        byte[] bytes = "xtestx".getBytes(StandardCharsets.UTF_8);
+        Text value = text(bytes, 1, 4);
+        bytes[2] = 'E';
+        assertEquals(4, value.charCount());
+        assertEquals('e', value.charAt(1));
+        assertException(IndexOutOfBoundsException.class, () -> value.charAt(5));
+        assertEquals("test", value.toCharString());
+        assertArrayEquals(new char[] { 't', 'e', 's', 't' }, value.toCharArray());
+        assertEquals(text("test"), value);
+        assertEquals(text("test").hashCode(), value.hashCode());
+        assertSame(text(""), text(bytes, 1, 0));
+    }
+
+    @Test
+    public void text_utf8NonAscii_success() {
+        String string = "a\u00E4\u20AC\uD83D\uDE00b";
+        Text value = text(string.getBytes(StandardCharsets.UTF_8), 0, string.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(6, value.charCount());
+        assertEquals('\u20AC', value.charAt(2));
+        for(int begin = 0; begin <= string.length(); begin++) {
+            for(int end = begin; end <= string.length(); end++) {
+                char[] chars = new char[end - begin];
+                value.getChars(begin, end, chars, 0);
+                assertEquals(string.substring(begin, end), new String(chars));
+            }
+            if(begin < string.length()) {
+                assertEquals(string.charAt(begin), value.charAt(begin));
+            }
+        }
+        assertException(IndexOutOfBoundsException.class, () -> value.charAt(6));
+        assertEquals(string, value.toCharString());
+        assertEquals(text(string), value);
+        assertEquals(text(string).hashCode(), value.hashCode());
+    }
+
+    @Test
+    public void text_utf8Invalid_exception() {
+        byte[][] invalid = { { (byte) 0xC3 }, { (byte) 0x80 }, { (byte) 0xC0, (byte) 0x80 }, { (byte) 0xED, (byte) 0xA0, (byte) 0x80 },
+                { (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80 }, { 'a', (byte) 0xFF } };
+        for(byte[] bytes : invalid) {
+            assertException(IllegalArgumentException.class, "The bytes must be valid UTF-8.", () -> text(bytes, 0, bytes.length));
+        }
+    }
+
+    @Test
+    public void compareTo_utf8_consistentWithString() {
+        String[] strings = new String[] { "", "A", "AA", "B", "a", "\u00E4", "\u20AC", "\uD83D\uDE00", "\uD83D\uDE01", "\uE000", "\uFFFF",
+                "\u00E4pfel", "\u00E4pfelb", "a\uD83D\uDE00", "a\uD83D\uDE00b", "a\uE000" };
+        for(String stringA : strings) {
+            for(String stringB : strings) {
+                int expected = Integer.signum(stringA.compareTo(stringB));
+                assertEquals(stringA + " <=> " + stringB, expected, Integer.signum(utf8(stringA).compareTo(utf8(stringB))));
+                assertEquals(stringA + " <=> " + stringB, expected, Integer.signum(utf8(stringA).compareTo(text(stringB))));
+                assertEquals(stringA + " <=> " + stringB, expected, Integer.signum(text(stringA).compareTo(utf8(stringB))));
+            }
+        }
+    }
+
+    private static Text utf8(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        return text(bytes, 0, bytes.length);
+    }
 }
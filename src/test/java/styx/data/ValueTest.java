@@ -2,19 +2,33 @@ package styx.data;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static styx.data.AssertUtils.assertException;
 import static styx.data.Values.binary;
 import static styx.data.Values.complex;
+import static styx.data.Values.estimateSize;
+import static styx.data.Values.intern;
 import static styx.data.Values.list;
 import static styx.data.Values.number;
 import static styx.data.Values.pair;
 import static styx.data.Values.reference;
 import static styx.data.Values.text;
 
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.Test;
 
+import styx.data.impl.value.ValueFootprint;
+
 public class ValueTest {
 
     @Test
@@ -165,11 +179,133 @@ public class ValueTest {
 
     @Test
     public void hashCode_valid_success() {
-        assertEquals("1".hashCode(), number(1).hashCode());
-        assertEquals("\":-)\"".hashCode(), text(":-)").hashCode());
-        assertEquals("0x001234DEAD".hashCode(), binary(new byte[] { 0, 0x12, 0x34, (byte) 0xDE, (byte) 0xAD }).hashCode());
-        assertEquals("</part>".hashCode(), reference(text("part")).hashCode());
-        assertEquals("{val}".hashCode(), list(text("val")).hashCode());
+        assertEquals(number(1).hashCode(), number(1.0).hashCode());
+        assertEquals(number(12340000000L).hashCode(), number(12340000000.0).hashCode());
+        assertEquals(text(":-)").hashCode(), text(":-)").hashCode());
+        assertEquals(binary(new byte[] { 0, 0x12, (byte) 0xDE }).hashCode(), binary(new byte[] { 0, 0x12, (byte) 0xDE }).hashCode());
+        assertEquals(reference(text("part")).hashCode(), reference().child(text("part")).hashCode());
+        assertEquals(list(text("val")).hashCode(), complex(number(1), text("val")).hashCode());
+        assertEquals(list(text("val1"), text("val2"), text("val3")).hashCode(),
+                complex(pair(number(3), text("val3")), pair(number(1), text("val1")), pair(number(2), text("val2"))).hashCode());
+        assertNotEquals(list(text("val1"), text("val2")).hashCode(), list(text("val2"), text("val1")).hashCode());
+        assertNotEquals(reference(text("A"), text("B")).hashCode(), reference(text("B"), text("A")).hashCode());
+    }
+
+    @Test
+    public void intern_scalar_same() {
+        assertSame(intern(number(1)), intern(number(1.0)));
+        assertSame(intern(text("val")), intern(text("val")));
+        assertSame(intern(binary(new byte[] { 1, 2 })), intern(binary(new byte[] { 1, 2 })));
+        assertEquals(text("val"), intern(text("val")));
+    }
+
+    @Test
+    public void intern_nested_same() {
+        Value value1 = intern(complex(text("key"), list(text("val1"), reference(text("val2")))));
+        Value value2 = intern(complex(text("key"), list(text("val1"), reference(text("val2")))));
+        assertSame(value1, value2);
+        assertSame(intern(text("key")), value1.asComplex().allKeys().get(0));
+        assertSame(intern(list(text("val1"), reference(text("val2")))), value1.asComplex().get(text("key")).get());
+        assertSame(intern(text("val2")), intern(reference(text("val2"))).asReference().partAt(0));
+    }
+
+    @Test
+    public void intern_systemProperty_factoriesCanonical() throws Exception {
+        // the property is read once when Values is initialized, so it is loaded again by a separate class loader
+        String previous = System.setProperty("styx.data.intern", "true");
+        List<URL> urls = new ArrayList<>();
+        for(String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(Paths.get(path).toUri().toURL());
+        }
+        try(URLClassLoader loader = new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent())) {
+            Class<?> values = loader.loadClass(Values.class.getName());
+            assertTrue(values != Values.class);
+            Method text = values.getMethod("text", String.class);
+            Method number = values.getMethod("number", long.class);
+            Method parse = values.getMethod("parse", String.class);
+            assertSame(text.invoke(null, "val"), text.invoke(null, "val"));
+            assertSame(number.invoke(null, 1234567L), number.invoke(null, 1234567L));
+            Object value1 = parse.invoke(null, "{ key: { val1, </val2> }, 0x0102 }");
+            Object value2 = parse.invoke(null, "{ key: { val1, </val2> }, 0x0102 }");
+            assertSame(value1, value2);
+            Class<?> value = loader.loadClass(Value.class.getName());
+            Method complex = values.getMethod("complex", value, value);
+            assertSame(complex.invoke(null, text.invoke(null, "key"), text.invoke(null, "val")),
+                    complex.invoke(null, text.invoke(null, "key"), text.invoke(null, "val")));
+        } finally {
+            if(previous == null) {
+                System.clearProperty("styx.data.intern");
+            } else {
+                System.setProperty("styx.data.intern", previous);
+            }
+        }
+    }
+
+    @Test
+    public void estimateSize_scalar_success() {
+        assertEquals(16, estimateSize(number(1)));
+        assertEquals(24, estimateSize(number(1.5)));
+        assertTrue(estimateSize(text("a long textual value")) > estimateSize(text("short")));
+        assertTrue(estimateSize(binary(new byte[1000])) > 1000);
+        assertTrue(estimateSize(reference(text("a"), text("b"))) > estimateSize(reference(text("a"))));
+    }
+
+    @Test
+    public void estimateSize_shared_countedOnce() {
+        Value large = text(new String(new char[10000]).replace('\0', 'x'));
+        long single = new ValueFootprint().add(complex(text("key"), large));
+        long twice = new ValueFootprint().add(complex(pair(text("key1"), large), pair(text("key2"), large)));
+        assertTrue(twice > single);
+        assertTrue(twice < single + 1000);
+        assertTrue(estimateSize(complex(pair(text("key1"), large), pair(text("key2"), large))) > single + 10000);
+
+        Complex version1 = Values.empty();
+        for(int i = 0; i < 1000; i++) {
+            version1 = version1.put(text("key" + i), number(i));
+        }
+        Complex version2 = version1.put(text("key500"), number(-1));
+        ValueFootprint footprint = new ValueFootprint();
+        long size1 = footprint.add(version1);
+        long size2 = footprint.add(version2);
+        assertEquals(size1, estimateSize(version1));
+        assertTrue(size2 > 0 && size2 < size1 / 10);
+        assertEquals(0, footprint.add(version2));
+        assertEquals(size1 + size2, footprint.total());
+    }
+
+    @Test
+    public void estimateSize_notShared_sameAsFootprint() {
+        for(int size : new int[] { 1, 10, 33, 100, 1100, 2000 }) {
+            Complex list = Values.empty();
+            Complex map = Values.empty();
+            for(int i = 0; i < size; i++) {
+                list = list.add(text("value" + i));
+                map = map.put(text("key" + i), number(i));
+                if(i % 7 == 0) {
+                    estimateSize(list); // memoized, carried forward to the next versions
+                }
+            }
+            Complex built = Values.complex(map.allEntries());
+            assertEquals(new ValueFootprint().add(list), estimateSize(list));
+            assertEquals(new ValueFootprint().add(list), estimateSize(list));
+            assertEquals(new ValueFootprint().add(map), estimateSize(map));
+            assertEquals(new ValueFootprint().add(built), estimateSize(built));
+            assertEquals(new ValueFootprint().add(list.headMap(number(size / 2 + 1))), estimateSize(list.headMap(number(size / 2 + 1))));
+            assertEquals(new ValueFootprint().add(list.put(number(size), null)), estimateSize(list.put(number(size), null)));
+        }
+    }
+
+    @Test
+    public void estimateSize_byKind_success() {
+        ValueFootprint footprint = new ValueFootprint();
+        footprint.add(complex(pair(text("key"), binary(new byte[100])), pair(number(1), reference(text("a")))));
+        Map<Kind, Long> byKind = footprint.byKind();
+        assertEquals(Kind.values().length, byKind.size());
+        for(Kind kind : Kind.values()) {
+            assertTrue(byKind.get(kind) > 0);
+        }
+        assertTrue(byKind.get(Kind.BINARY) > 100);
+        assertEquals(footprint.total(), byKind.values().stream().mapToLong(Long::longValue).sum());
     }
 
     @Test